@@ -0,0 +1,10 @@
+#!/bin/sh
+# Runs once, when docker-compose.replica.yml initializes the primary database:
+# creates the role the read replica streams WAL with, and lets it connect for replication
+set -e
+
+psql -v ON_ERROR_STOP=1 --username "$POSTGRES_USER" --dbname "$POSTGRES_DB" <<-EOSQL
+    CREATE ROLE replicator WITH REPLICATION LOGIN PASSWORD 'replicator';
+EOSQL
+
+echo "host replication replicator all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -1,3 +1,7 @@
+-- Initial schema and sample data, loaded by the database container on first start.
+-- Later schema changes are Flyway migrations in
+-- services/data-access-service/src/main/resources/db/migration (this file is version 1).
+
 -- Connect to the 'mydb' database (optional, but good practice for clarity)
 \c mydb;
 
@@ -29,8 +29,8 @@ package com.example.adminservice.controller;
  * - All admin routes are under the /admin/ path prefix
  */
 
-import com.example.adminservice.model.User;
 import com.example.adminservice.service.UserManagementService;
+import com.example.contracts.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
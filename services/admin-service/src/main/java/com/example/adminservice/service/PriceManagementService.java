@@ -29,7 +29,10 @@ package com.example.adminservice.service;
  * - Only administrators can access this functionality
  */
 
-import com.example.adminservice.model.InventoryItem;
+import com.example.common.auth.UserInfoClient;
+import com.example.common.inventory.InventoryCache;
+import com.example.contracts.InventoryItem;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.core.ParameterizedTypeReference;
@@ -54,50 +57,51 @@ public class PriceManagementService {
     private final WebClient dataAccessClient;
 
     /**
-     * WebClient for communicating with the Auth Service (via Nginx).
+     * Local copy of the inventory, kept fresh by the Data Access change feed.
+     *
+     * Page renders read from it instead of fetching the inventory on every request.
+     */
+    private final InventoryCache inventoryCache;
+
+    /**
+     * Client for resolving the current admin user from the session cookie.
      *
      * This client is used to:
-     * - Retrieve current admin user information
-     * - Verify authentication status
-     * - Get admin user details for the UI
+     * - Retrieve current admin user information from the shared per-session cache
+     * - Fall back to the Auth Service (via Nginx) on a cache miss
      */
-    private final WebClient authClient;
+    private final UserInfoClient userInfoClient;
 
     /**
-     * Constructor that initializes the WebClient instances.
+     * Constructor that initializes the WebClient instance.
      *
-     * The WebClients are configured to communicate with:
+     * The WebClient is configured to communicate with:
      * - Data Access Service: For database operations
-     * - Auth Service (via Nginx): For user authentication
+     *
+     * @param dataAccessWebClient Shared client for the Data Access Service
+     * @param userInfoClient Shared client for current user information
+     * @param inventoryCache Shared local inventory cache
      */
-    public PriceManagementService() {
-        // Create WebClient for Data Access Service
-        this.dataAccessClient = WebClient.create("http://data-access-service:8085");
-        // Create WebClient for Auth Service (via Nginx)
-        this.authClient = WebClient.create("http://nginx:80");
+    public PriceManagementService(@Qualifier("dataAccessWebClient") WebClient dataAccessWebClient,
+                                  UserInfoClient userInfoClient, InventoryCache inventoryCache) {
+        // Shared, pooled client for the Data Access Service (see common HttpClientAutoConfiguration)
+        this.dataAccessClient = dataAccessWebClient;
+        this.inventoryCache = inventoryCache;
+        this.userInfoClient = userInfoClient;
     }
 
     /**
      * Retrieves all inventory items from the database.
      *
      * This method:
-     * - Fetches inventory data from the Data Access Service
-     * - Transforms the raw data into InventoryItem domain objects
+     * - Reads inventory data from the local inventory cache
      * - Returns a list of inventory items for display and price management
      *
      * @return List of InventoryItem objects representing the current inventory
      */
     public List<InventoryItem> getInventoryItems() {
-        // Retrieve inventory data from Data Access Service
-        return dataAccessClient.get()
-                .uri("/api/data/tables/inventory")
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-                .block()
-                // Transform raw data into domain objects
-                .stream()
-                .map(this::mapToInventoryItem)
-                .collect(Collectors.toList());
+        // Retrieve inventory data from the local copy of the Data Access Service inventory
+        return inventoryCache.getItems();
     }
 
     /**
@@ -117,56 +121,28 @@ public class PriceManagementService {
         }
 
         try {
-            // Request user information from Auth Service
-            return authClient.get()
-                    .uri("/auth/user")
-                    .cookie("JSESSIONID", sessionId)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                    .block();
+            // Request user information (cached per session, Auth Service on a miss)
+            return userInfoClient.getUserInfo(sessionId);
         } catch (Exception e) {
             // Return null if authentication fails
             return null;
         }
     }
 
-    /**
-     * Maps a raw data map from the database to an InventoryItem domain object.
-     *
-     * This method:
-     * - Extracts values from the raw data map
-     * - Converts them to the appropriate types
-     * - Populates an InventoryItem object with the values
-     *
-     * @param map The raw data map from the database
-     * @return An InventoryItem object populated with the data
-     */
-    private InventoryItem mapToInventoryItem(Map<String, Object> map) {
-        InventoryItem item = new InventoryItem();
-        // Extract and convert product ID
-        item.setProductId(((Number) map.get("productid")).longValue());
-        // Extract product description
-        item.setDescription((String) map.get("description"));
-        // Extract and convert stock quantity
-        item.setStockKG(((Number) map.get("stockkg")).doubleValue());
-        // Extract and convert price per kg
-        item.setPricePerKG(((Number) map.get("priceperkg")).intValue());
-        return item;
-    }
-
     /**
      * Updates prices for multiple products in a batch operation.
      *
      * This method:
      * 1. Parses and validates the input prices from the form submission
-     * 2. Updates each product's price through the Data Access Service
+     * 2. Sends all prices to the Data Access Service in one batch request
+     * 3. Reports any product IDs that were not found
      *
      * Form Parameter Format:
      * - Keys are in the format "prices[productId]"
      * - Values are the new prices as strings
      *
      * @param prices Map of form parameters containing product IDs and prices
-     * @throws RuntimeException if no valid prices are provided
+     * @throws RuntimeException if no valid prices are provided or a product is not found
      */
     public void updatePrices(Map<String, String> prices) {
         // Parse and validate the input prices
@@ -192,18 +168,22 @@ public class PriceManagementService {
             throw new RuntimeException("No valid prices provided");
         }
 
-        // Update each product's price
-        for (Map.Entry<Long, Integer> entry : validPrices.entrySet()) {
-            // Update price through data-access-service
-            dataAccessClient.post()
-                    .uri("/api/data/tables/inventory/update")
-                    .bodyValue(Map.of(
-                        "productId", entry.getKey(),
-                        "pricePerKG", entry.getValue()
-                    ))
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
+        // Update all prices in a single request (one SQL batch on the Data Access side)
+        List<Map<String, Object>> results = dataAccessClient.post()
+                .uri("/api/data/inventory/update-prices")
+                .bodyValue(validPrices)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .block();
+        inventoryCache.invalidate();
+
+        // Report products that do not exist (the other prices are already applied)
+        List<Object> missing = results == null ? List.of() : results.stream()
+                .filter(result -> !Boolean.TRUE.equals(result.get("updated")))
+                .map(result -> result.get("productId"))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            throw new RuntimeException("Product not found with ID: " + missing);
         }
     }
 }
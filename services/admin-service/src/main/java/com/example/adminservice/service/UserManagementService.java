@@ -32,7 +32,11 @@ package com.example.adminservice.service;
  * - Only administrators can access this functionality
  */
 
-import com.example.adminservice.model.User;
+import com.example.common.auth.UserInfoCacheInvalidator;
+import com.example.common.auth.UserInfoClient;
+import com.example.common.http.RevalidatingClient;
+import com.example.contracts.User;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -61,27 +65,46 @@ public class UserManagementService {
     private final WebClient dataAccessClient;
 
     /**
-     * WebClient for communicating with the Auth Service (via Nginx).
+     * Conditional-GET wrapper around the Data Access client.
+     *
+     * Remembers the last response of each read endpoint and revalidates it with its ETag,
+     * so unchanged data costs a header-only 304 exchange.
+     */
+    private final RevalidatingClient dataAccessReads;
+
+    /**
+     * Client for resolving the current admin user from the session cookie.
      *
      * This client is used to:
-     * - Retrieve current admin user information
-     * - Verify authentication status
-     * - Get admin user details for the UI
+     * - Retrieve current admin user information from the shared per-session cache
+     * - Fall back to the Auth Service (via Nginx) on a cache miss
+     */
+    private final UserInfoClient userInfoClient;
+
+    /**
+     * Invalidator for the user-info caches held by every web service.
+     *
+     * Used to drop cached sessions of a user after it is deleted or its password is reset.
      */
-    private final WebClient authClient;
+    private final UserInfoCacheInvalidator userInfoCacheInvalidator;
 
     /**
-     * Constructor that initializes the WebClient instances.
+     * Constructor that initializes the WebClient instance.
      *
-     * The WebClients are configured to communicate with:
+     * The WebClient is configured to communicate with:
      * - Data Access Service: For database operations
-     * - Auth Service (via Nginx): For user authentication
+     *
+     * @param dataAccessWebClient Shared client for the Data Access Service
+     * @param userInfoClient Shared client for current user information
+     * @param userInfoCacheInvalidator Shared invalidator for cached user information
      */
-    public UserManagementService() {
-        // Create WebClient for Data Access Service
-        this.dataAccessClient = WebClient.create("http://data-access-service:8085");
-        // Create WebClient for Auth Service (via Nginx)
-        this.authClient = WebClient.create("http://nginx:80");
+    public UserManagementService(@Qualifier("dataAccessWebClient") WebClient dataAccessWebClient,
+                                 UserInfoClient userInfoClient, UserInfoCacheInvalidator userInfoCacheInvalidator) {
+        // Shared, pooled client for the Data Access Service (see common HttpClientAutoConfiguration)
+        this.dataAccessClient = dataAccessWebClient;
+        this.dataAccessReads = new RevalidatingClient(this.dataAccessClient, 16);
+        this.userInfoClient = userInfoClient;
+        this.userInfoCacheInvalidator = userInfoCacheInvalidator;
     }
 
     /**
@@ -89,28 +112,17 @@ public class UserManagementService {
      *
      * This method:
      * - Fetches user data from the Data Access Service
-     * - Transforms the raw data into User domain objects
      * - Returns a list of users for display in the admin interface
      *
      * @return List of User objects representing all users in the system
      */
     public List<User> getAllUsers() {
         // Retrieve user data from Data Access Service
-        List<Map<String, Object>> userMaps = dataAccessClient.get()
-                .uri("/api/data/users")
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-                .block();
+        List<User> users = dataAccessReads.get("/api/data/users",
+                new ParameterizedTypeReference<List<User>>() {});
 
         // Handle null response
-        if (userMaps == null) {
-            return List.of();
-        }
-
-        // Convert raw data to domain objects
-        return userMaps.stream()
-                .map(this::convertToUser)
-                .toList();
+        return users == null ? List.of() : users;
     }
 
     /**
@@ -130,13 +142,8 @@ public class UserManagementService {
         }
 
         try {
-            // Request user information from Auth Service
-            return authClient.get()
-                    .uri("/auth/user")
-                    .cookie("JSESSIONID", sessionId)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                    .block();
+            // Request user information (cached per session, Auth Service on a miss)
+            return userInfoClient.getUserInfo(sessionId);
         } catch (Exception e) {
             // Return null if authentication fails
             return null;
@@ -169,53 +176,13 @@ public class UserManagementService {
         return currentUserId.equals(targetUserId);
     }
 
-    /**
-     * Converts a raw user data map to a User domain object.
-     *
-     * This method:
-     * - Safely extracts values from the raw data map
-     * - Handles missing fields gracefully
-     * - Converts data types as needed
-     * - Populates a User object with the extracted data
-     *
-     * @param userMap The raw user data map from the database
-     * @return A User object populated with the data
-     */
-    private User convertToUser(Map<String, Object> userMap) {
-        User user = new User();
-        // Extract and set user ID if present
-        if (userMap.containsKey("id")) {
-            user.setId(((Number) userMap.get("id")).longValue());
-        }
-        // Extract and set first name if present
-        if (userMap.containsKey("firstName")) {
-            user.setFirstName((String) userMap.get("firstName"));
-        }
-        // Extract and set last name if present
-        if (userMap.containsKey("lastName")) {
-            user.setLastName((String) userMap.get("lastName"));
-        }
-        // Extract and set email if present
-        if (userMap.containsKey("email")) {
-            user.setEmail((String) userMap.get("email"));
-        }
-        // Extract and set phone if present
-        if (userMap.containsKey("phone")) {
-            user.setPhone((String) userMap.get("phone"));
-        }
-        // Extract and set user type if present
-        if (userMap.containsKey("type")) {
-            user.setType(((Number) userMap.get("type")).intValue());
-        }
-        return user;
-    }
-
     /**
      * Deletes a user from the system.
      *
      * This method:
      * - Sends a delete request to the Data Access Service
      * - Passes the user ID to identify the user to delete
+     * - Evicts the user's cached sessions in every service
      * - Returns the result of the operation
      *
      * @param userId The ID of the user to delete
@@ -223,11 +190,17 @@ public class UserManagementService {
      */
     public boolean deleteUser(Long userId) {
         // Send delete request to Data Access Service
-        return dataAccessClient.delete()
+        Boolean deleted = dataAccessClient.delete()
                 .uri("/api/data/users/{userId}", userId)
                 .retrieve()
                 .bodyToMono(Boolean.class)
                 .block();
+
+        // Drop any cached sessions of the deleted user across all services
+        if (Boolean.TRUE.equals(deleted)) {
+            userInfoCacheInvalidator.evictUser(userId);
+        }
+        return Boolean.TRUE.equals(deleted);
     }
 
     /**
@@ -236,6 +209,7 @@ public class UserManagementService {
      * This method:
      * - Creates a data map with the user ID and new password
      * - Sends a password reset request to the Data Access Service
+     * - Evicts the user's cached sessions in every service
      * - Returns the result of the operation
      *
      * Security Note:
@@ -253,11 +227,17 @@ public class UserManagementService {
         passwordData.put("newPassword", newPassword);
 
         // Send password reset request to Data Access Service
-        return dataAccessClient.post()
+        Boolean reset = dataAccessClient.post()
                 .uri("/api/data/users/reset-password")
                 .bodyValue(passwordData)
                 .retrieve()
                 .bodyToMono(Boolean.class)
                 .block();
+
+        // Force the user's sessions to be re-resolved on their next page view
+        if (Boolean.TRUE.equals(reset)) {
+            userInfoCacheInvalidator.evictUser(userId);
+        }
+        return Boolean.TRUE.equals(reset);
     }
 }
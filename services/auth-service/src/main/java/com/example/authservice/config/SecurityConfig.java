@@ -22,9 +22,12 @@ package com.example.authservice.config;
  * 3. CustomUserDetailsService loads the user from the Data Access Service
  * 4. Credentials are verified using BCryptPasswordEncoder
  * 5. Upon successful authentication, a session is created (JSESSIONID cookie)
+ *    and a signed session token is issued (AUTH_TOKEN cookie) for in-process verification
  * 6. User is redirected to the default success URL
  */
 
+import com.example.common.auth.UserInfoCacheInvalidator;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -59,6 +62,25 @@ public class SecurityConfig {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    /**
+     * Invalidator for the user-info caches held by the other web services.
+     *
+     * On logout, the session being invalidated is evicted from every service's cache
+     * so the old JSESSIONID can no longer be resolved to a user.
+     *
+     * @Autowired - Injects the UserInfoCacheInvalidator provided by the common module
+     */
+    @Autowired
+    private UserInfoCacheInvalidator userInfoCacheInvalidator;
+
+    /**
+     * Success handler that issues the signed session token and redirects to /home.
+     *
+     * @Autowired - Injects the SessionTokenSuccessHandler component
+     */
+    @Autowired
+    private SessionTokenSuccessHandler sessionTokenSuccessHandler;
+
     /**
      * Creates a PasswordEncoder bean for secure password handling.
      *
@@ -98,6 +120,8 @@ public class SecurityConfig {
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
+            // Internal cache eviction calls come from other services, not from browser forms
+            .csrf(csrf -> csrf.ignoringRequestMatchers("/auth/internal/**"))
             // Configure URL-based authorization rules
             .authorizeHttpRequests(authorize ->
                 authorize
@@ -113,8 +137,8 @@ public class SecurityConfig {
                     .loginPage("/login")
                     // URL to submit the login form
                     .loginProcessingUrl("/login")
-                    // Where to redirect after successful login
-                    .defaultSuccessUrl("/home", true)
+                    // Issue the session token, then redirect to /home
+                    .successHandler(sessionTokenSuccessHandler)
                     // Allow all users to access the login page
                     .permitAll()
             )
@@ -123,12 +147,19 @@ public class SecurityConfig {
                 logout
                     // URL that triggers logout
                     .logoutRequestMatcher(new AntPathRequestMatcher("/logout"))
+                    // Evict the session from the other services' user-info caches
+                    .addLogoutHandler((request, response, authentication) -> {
+                        HttpSession session = request.getSession(false);
+                        if (session != null) {
+                            userInfoCacheInvalidator.evictSession(session.getId());
+                        }
+                    })
                     // Where to redirect after logout
                     .logoutSuccessUrl("/login?logout")
                     // Invalidate the HTTP session
                     .invalidateHttpSession(true)
-                    // Remove the session cookie
-                    .deleteCookies("JSESSIONID")
+                    // Remove the session and session token cookies
+                    .deleteCookies("JSESSIONID", "AUTH_TOKEN")
                     // Allow all users to logout
                     .permitAll()
             );
@@ -0,0 +1,83 @@
+package com.example.authservice.config;
+
+/**
+ * Auth Service - Session Token Success Handler
+ *
+ * Runs after a successful form login. In addition to the usual redirect to /home, it issues a
+ * signed session token (AUTH_TOKEN cookie) carrying the user's id, email, names and type.
+ *
+ * The other services verify this token in-process (see SessionTokenCodec in the common module),
+ * so resolving the current user on a page view no longer needs a call to /auth/user.
+ *
+ * The token is bound to the new JSESSIONID and is rejected with any other session cookie.
+ *
+ * When no token secret is configured, no token is issued and the services fall back to /auth/user.
+ */
+
+import com.example.authservice.model.User;
+import com.example.authservice.service.UserCacheService;
+import com.example.common.auth.SessionTokenCodec;
+import com.example.common.auth.SessionTokenProperties;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Component
+public class SessionTokenSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
+
+    private final UserCacheService userCacheService;
+
+    private final ObjectProvider<SessionTokenCodec> sessionTokenCodec;
+
+    private final SessionTokenProperties tokenProperties;
+
+    public SessionTokenSuccessHandler(UserCacheService userCacheService,
+                                      ObjectProvider<SessionTokenCodec> sessionTokenCodec,
+                                      SessionTokenProperties tokenProperties) {
+        super("/home");
+        setAlwaysUseDefaultTargetUrl(true);
+        this.userCacheService = userCacheService;
+        this.sessionTokenCodec = sessionTokenCodec;
+        this.tokenProperties = tokenProperties;
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws IOException, ServletException {
+        SessionTokenCodec codec = sessionTokenCodec.getIfAvailable();
+        if (codec != null) {
+            // The user was just loaded by CustomUserDetailsService, so this is a cache hit
+            Optional<User> userOpt = userCacheService.findUserByEmail(authentication.getName());
+            // Bound to the session as it is after login (session fixation protection has already
+            // given it a new ID), so the token stops working when the session ends
+            String sessionId = request.getSession().getId();
+            userOpt.ifPresent(user -> response.addCookie(tokenCookie(codec, user, sessionId)));
+        }
+        super.onAuthenticationSuccess(request, response, authentication);
+    }
+
+    private Cookie tokenCookie(SessionTokenCodec codec, User user, String sessionId) {
+        Map<String, Object> userInfo = new HashMap<>();
+        userInfo.put("id", user.getId());
+        userInfo.put("email", user.getEmail());
+        userInfo.put("firstName", user.getFirstName());
+        userInfo.put("lastName", user.getLastName());
+        userInfo.put("type", user.getType());
+
+        Cookie cookie = new Cookie(codec.getCookieName(), codec.issue(userInfo, sessionId));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) tokenProperties.getTtl().toSeconds());
+        return cookie;
+    }
+}
@@ -14,7 +14,8 @@ package com.example.authservice.controller;
  * Architecture Notes:
  * - This controller is called by Nginx's auth_request directive
  * - It works with Spring Security to check authentication status
- * - It communicates with the Data Access Service to retrieve user details
+ * - It resolves user details through the in-memory UserCacheService, falling back to the
+ *   Data Access Service on a miss
  * - It enforces role-based access control for admin routes
  *
  * Authentication Flow:
@@ -27,14 +28,16 @@ package com.example.authservice.controller;
  */
 
 import com.example.authservice.model.User;
-import com.example.authservice.service.DataAccessService;
+import com.example.authservice.service.UserCacheService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
@@ -56,17 +59,17 @@ import jakarta.servlet.http.HttpServletRequest;
 public class AuthCheckController {
 
     /**
-     * The DataAccessService provides access to user data in the database.
+     * The UserCacheService provides cached access to user data.
      *
      * In our microservices architecture:
-     * - This service communicates with the Data Access Service
-     * - It retrieves user information for authentication checks
+     * - Users are served from memory on the hot path (every auth_request subrequest)
+     * - The Data Access Service is only called on a cache miss
      * - It's used to verify user roles and permissions
      *
-     * @Autowired - Injects the DataAccessService bean into this controller
+     * @Autowired - Injects the UserCacheService bean into this controller
      */
     @Autowired
-    private DataAccessService dataAccessService;
+    private UserCacheService userCacheService;
 
     /**
      * Verifies if a user is authenticated and has appropriate permissions.
@@ -104,8 +107,8 @@ public class AuthCheckController {
             if (originalUri != null && originalUri.startsWith("/admin/")) {
                 // Get user email from authentication
                 String email = auth.getName();
-                // Retrieve full user details from Data Access Service
-                Optional<User> userOpt = dataAccessService.findUserByEmail(email);
+                // Retrieve full user details (cached, Data Access Service on a miss)
+                Optional<User> userOpt = userCacheService.findUserByEmail(email);
 
                 // Check if user exists and has admin privileges (type=2)
                 if (userOpt.isPresent() && userOpt.get().getType() != null && userOpt.get().getType() == 2) {
@@ -153,8 +156,8 @@ public class AuthCheckController {
         if (auth != null && auth.isAuthenticated() && !auth.getName().equals("anonymousUser")) {
             // Get user email from authentication
             String email = auth.getName();
-            // Retrieve full user details from Data Access Service
-            Optional<User> userOpt = dataAccessService.findUserByEmail(email);
+            // Retrieve full user details (cached, Data Access Service on a miss)
+            Optional<User> userOpt = userCacheService.findUserByEmail(email);
 
             if (userOpt.isPresent()) {
                 // Extract user information
@@ -174,4 +177,21 @@ public class AuthCheckController {
         // User is not authenticated or not found
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
+
+    /**
+     * Evicts a user from the in-memory user cache.
+     *
+     * This endpoint:
+     * - Is called by the Data Access Service after it deletes a user or changes a password
+     * - Is not routed by Nginx, so it is only reachable inside the Docker network
+     *
+     * @PostMapping - Maps HTTP POST requests to "/auth/internal/users/evict"
+     * @param email - The email of the changed user
+     * @return ResponseEntity with no content
+     */
+    @PostMapping("/internal/users/evict")
+    public ResponseEntity<Void> evictUser(@RequestParam String email) {
+        userCacheService.evict(email);
+        return ResponseEntity.noContent().build();
+    }
 }
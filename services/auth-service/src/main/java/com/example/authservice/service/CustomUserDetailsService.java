@@ -17,6 +17,9 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private DataAccessService dataAccessService;
 
+    @Autowired
+    private UserCacheService userCacheService;
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         System.out.println("Attempting to load user by email: " + email);
@@ -31,6 +34,9 @@ public class CustomUserDetailsService implements UserDetailsService {
 
             User user = userOpt.get();
             System.out.println("User found: " + user.getEmail());
+
+            // Login always reads the user fresh; keep it for the auth checks that follow
+            userCacheService.put(user);
             System.out.println("Password present: " + (user.getPassword() != null && !user.getPassword().isEmpty()));
 
             return new org.springframework.security.core.userdetails.User(
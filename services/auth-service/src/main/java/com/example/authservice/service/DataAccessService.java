@@ -28,6 +28,7 @@ package com.example.authservice.service;
  */
 
 import com.example.authservice.model.User;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -59,10 +60,12 @@ public class DataAccessService {
      *
      * The WebClient is configured to communicate with:
      * - Data Access Service: For database operations
+     *
+     * @param dataAccessWebClient Shared client for the Data Access Service
      */
-    public DataAccessService() {
-        // Create WebClient for Data Access Service
-        this.webClient = WebClient.create("http://data-access-service:8085");
+    public DataAccessService(@Qualifier("dataAccessWebClient") WebClient dataAccessWebClient) {
+        // Shared, pooled client for the Data Access Service (see common HttpClientAutoConfiguration)
+        this.webClient = dataAccessWebClient;
     }
 
     /**
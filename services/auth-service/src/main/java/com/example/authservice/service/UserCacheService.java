@@ -0,0 +1,90 @@
+package com.example.authservice.service;
+
+/**
+ * User Cache Service - Service Layer
+ *
+ * This service keeps recently used User records in memory, keyed by email, so that
+ * authentication checks do not need a round trip to the Data Access Service.
+ *
+ * Architecture Notes:
+ * - Nginx calls /auth/check on every protected request, and the other services call /auth/user
+ *   on every page view; both resolve the user by email
+ * - Entries are populated at login by CustomUserDetailsService and on cache misses
+ * - The Data Access Service pushes an eviction to /auth/internal/users/evict whenever it
+ *   deletes a user or changes a password, so stale entries are dropped immediately
+ * - A TTL bounds staleness in case a push is lost
+ */
+
+import com.example.authservice.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Service for cached user lookups.
+ *
+ * @Service - Indicates that this class is a Spring service component
+ *            that contains business logic.
+ */
+@Service
+public class UserCacheService {
+
+    /**
+     * DataAccessService used to load users on a cache miss
+     */
+    private final DataAccessService dataAccessService;
+
+    /**
+     * Email to User cache, bounded in size and age
+     */
+    private final Cache<String, User> cache;
+
+    public UserCacheService(DataAccessService dataAccessService,
+                            MeterRegistry meterRegistry,
+                            @Value("${auth.user-cache.max-size:10000}") long maxSize,
+                            @Value("${auth.user-cache.ttl:10m}") Duration ttl) {
+        this.dataAccessService = dataAccessService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    /**
+     * Finds a user by email, loading it from the Data Access Service on a miss.
+     *
+     * Users that cannot be found are not cached.
+     *
+     * @param email The email address to look up
+     * @return Optional containing the User if found, or empty if not found
+     */
+    public Optional<User> findUserByEmail(String email) {
+        return Optional.ofNullable(cache.get(email, key -> dataAccessService.findUserByEmail(key).orElse(null)));
+    }
+
+    /**
+     * Stores a freshly loaded user, e.g. at login.
+     *
+     * @param user The user to cache
+     */
+    public void put(User user) {
+        cache.put(user.getEmail(), user);
+    }
+
+    /**
+     * Drops a user from the cache after it was changed or deleted.
+     *
+     * @param email The email of the changed user
+     */
+    public void evict(String email) {
+        cache.invalidate(email);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.common.auth;
+
+/**
+ * Shared Library - Session Token Codec
+ *
+ * Issues and verifies compact signed tokens that carry the same user info /auth/user returns
+ * (id, email, firstName, lastName, type). The Auth Service issues a token at login alongside
+ * JSESSIONID; every other service verifies it in-process, so resolving the current user needs
+ * no network call at all.
+ *
+ * Token Format:
+ *   base64url(JSON claims) + "." + base64url(HMAC-SHA256(claims))
+ *
+ * The claims include an "exp" epoch-second timestamp; expired or tampered tokens are rejected.
+ *
+ * Binding and revocation:
+ * - A "sid" claim holds a hash of the JSESSIONID the token was issued with; a token is only
+ *   accepted together with that session cookie, so it dies with its session
+ * - An "iat" (issued at) claim lets verifiers reject tokens issued before a user was revoked
+ *   (see UserInfoCache.isRevoked)
+ * - The secret must be at least 32 characters; a shorter one fails startup
+ */
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public class SessionTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final String EXPIRY_CLAIM = "exp";
+
+    private static final String ISSUED_AT_CLAIM = "iat";
+
+    private static final String SESSION_CLAIM = "sid";
+
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    /**
+     * A verified token.
+     *
+     * @param userInfo The user info it carries (the same keys /auth/user returns)
+     * @param issuedAt When it was issued, in epoch seconds
+     */
+    public record Token(Map<String, Object> userInfo, long issuedAt) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SecretKeySpec key;
+
+    private final SessionTokenProperties properties;
+
+    private final Clock clock;
+
+    public SessionTokenCodec(SessionTokenProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    SessionTokenCodec(SessionTokenProperties properties, Clock clock) {
+        if (properties.getSecret() == null || properties.getSecret().length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("auth.token.secret must be at least " + MIN_SECRET_LENGTH + " characters");
+        }
+        this.key = new SecretKeySpec(properties.getSecret().getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    public String getCookieName() {
+        return properties.getCookieName();
+    }
+
+    /**
+     * Issues a token for the given user info, bound to a session.
+     *
+     * @param userInfo Map with the same keys /auth/user returns
+     * @param sessionId The JSESSIONID of the session the token belongs to
+     * @return The signed token
+     */
+    public String issue(Map<String, Object> userInfo, String sessionId) {
+        Map<String, Object> claims = new LinkedHashMap<>(userInfo);
+        claims.put(SESSION_CLAIM, sessionHash(sessionId));
+        claims.put(ISSUED_AT_CLAIM, clock.instant().getEpochSecond());
+        claims.put(EXPIRY_CLAIM, clock.instant().plus(properties.getTtl()).getEpochSecond());
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(claims);
+            Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+            return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to issue session token", e);
+        }
+    }
+
+    /**
+     * Verifies a token and returns the user info it carries.
+     *
+     * @param token The token from the cookie
+     * @param sessionId The JSESSIONID sent with it
+     * @return The verified token, or empty if it is malformed, tampered with, expired or was
+     *         issued for another session
+     */
+    public Optional<Token> verify(String token, String sessionId) {
+        if (token == null || sessionId == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return Optional.empty();
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return Optional.empty();
+            }
+
+            Map<String, Object> claims = objectMapper.readValue(payload, new TypeReference<LinkedHashMap<String, Object>>() {});
+            Object expiry = claims.remove(EXPIRY_CLAIM);
+            if (!(expiry instanceof Number) || ((Number) expiry).longValue() <= clock.instant().getEpochSecond()) {
+                return Optional.empty();
+            }
+            if (!sessionHash(sessionId).equals(claims.remove(SESSION_CLAIM))) {
+                return Optional.empty();
+            }
+            if (!(claims.remove(ISSUED_AT_CLAIM) instanceof Number issuedAt)) {
+                return Optional.empty();
+            }
+            return Optional.of(new Token(claims, issuedAt.longValue()));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The session ID is stored hashed, so the token does not repeat the session cookie.
+     */
+    private static String sessionHash(String sessionId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sessionId.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] sign(byte[] payload) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(key);
+        return mac.doFinal(payload);
+    }
+}
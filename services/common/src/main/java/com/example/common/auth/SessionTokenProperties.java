@@ -0,0 +1,42 @@
+package com.example.common.auth;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration for signed session tokens.
+ *
+ * Bound from the "auth.token" prefix. Every service must share the same secret
+ * (AUTH_TOKEN_SECRET in docker-compose.yml); when no secret is configured, tokens are
+ * neither issued nor verified and user info falls back to the /auth/user call.
+ */
+@ConfigurationProperties(prefix = "auth.token")
+public class SessionTokenProperties {
+    /**
+     * HMAC-SHA256 key shared by the Auth Service (issuer) and the web services (verifiers)
+     */
+    private String secret;
+
+    /**
+     * How long an issued token is valid; matches the session timeout by default
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+
+    /**
+     * Name of the cookie carrying the token
+     */
+    private String cookieName = "AUTH_TOKEN";
+
+    public String getSecret() { return secret; }
+
+    public void setSecret(String secret) { this.secret = secret; }
+
+    public Duration getTtl() { return ttl; }
+
+    public void setTtl(Duration ttl) { this.ttl = ttl; }
+
+    public String getCookieName() { return cookieName; }
+
+    public void setCookieName(String cookieName) { this.cookieName = cookieName; }
+}
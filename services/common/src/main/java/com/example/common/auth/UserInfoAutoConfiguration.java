@@ -0,0 +1,73 @@
+package com.example.common.auth;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Registers the shared user-info cache beans in every service that depends on the common module.
+ *
+ * Services that are the source of user info (the Auth Service) set userinfo.cache.enabled=false
+ * and only get the invalidator. The SessionTokenCodec is registered wherever auth.token.secret is set
+ * to a non-blank value; without one, tokens are disabled and user info comes from /auth/user.
+ */
+@AutoConfiguration
+@EnableConfigurationProperties({UserInfoCacheProperties.class, SessionTokenProperties.class})
+public class UserInfoAutoConfiguration {
+
+    @Bean
+    @Conditional(SessionTokenSecretCondition.class)
+    public SessionTokenCodec sessionTokenCodec(SessionTokenProperties properties) {
+        return new SessionTokenCodec(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "userinfo.cache", name = "enabled", matchIfMissing = true)
+    public UserInfoCache userInfoCache(UserInfoCacheProperties properties, SessionTokenProperties tokenProperties,
+                                       MeterRegistry meterRegistry) {
+        return new UserInfoCache(properties, tokenProperties.getTtl(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "userinfo.cache", name = "enabled", matchIfMissing = true)
+    public UserInfoClient userInfoClient(UserInfoCacheProperties properties, UserInfoCache userInfoCache,
+                                         ObjectProvider<SessionTokenCodec> sessionTokenCodec,
+                                         WebClient.Builder webClientBuilder) {
+        return new UserInfoClient(webClientBuilder.baseUrl(properties.getAuthUrl()).build(), userInfoCache,
+                sessionTokenCodec.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(prefix = "userinfo.cache", name = "enabled", matchIfMissing = true)
+    public UserInfoCacheController userInfoCacheController(UserInfoCache userInfoCache) {
+        return new UserInfoCacheController(userInfoCache);
+    }
+
+    @Bean
+    public UserInfoCacheInvalidator userInfoCacheInvalidator(UserInfoCacheProperties properties,
+                                                             ObjectProvider<UserInfoCache> userInfoCache,
+                                                             WebClient.Builder webClientBuilder) {
+        return new UserInfoCacheInvalidator(webClientBuilder.build(), properties.getPeers(), userInfoCache);
+    }
+
+    /**
+     * Matches when auth.token.secret has text (an empty AUTH_TOKEN_SECRET disables tokens).
+     */
+    static class SessionTokenSecretCondition implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return StringUtils.hasText(context.getEnvironment().getProperty("auth.token.secret"));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.common.auth;
+
+/**
+ * Shared Library - User Info Cache
+ *
+ * Every page rendered by the web services needs the current user's details, which come from
+ * the Auth Service's /auth/user endpoint (via Nginx, then the Data Access Service). This cache
+ * keeps those responses in memory, keyed by JSESSIONID, so repeat page views of the same
+ * session skip the round trip entirely.
+ *
+ * Cache Policy:
+ * - Bounded: at most userinfo.cache.max-size sessions are kept
+ * - Time-limited: entries expire userinfo.cache.ttl after they were fetched
+ * - Invalidated explicitly on logout (by session) and on user deletion or password reset (by user ID)
+ *
+ * Token Revocation:
+ * - Signed session tokens are verified without this cache, so evictions alone would not stop
+ *   them. Every eviction is therefore also remembered as a revocation (a logged-out session,
+ *   or a user with the time of the change) for as long as a token can live, and UserInfoClient
+ *   rejects tokens that match one
+ * - Revocations arrive through the same UserInfoCacheInvalidator broadcast as evictions; a
+ *   peer that misses the broadcast keeps accepting the token until it expires
+ *
+ * Metrics:
+ * - Hit/miss/eviction counters are published to Micrometer as cache.gets / cache.evictions
+ *   with the tag cache=userInfo
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+
+public class UserInfoCache {
+    /**
+     * Session ID to the user info map returned by /auth/user
+     */
+    private final Cache<String, Map<String, Object>> cache;
+
+    /**
+     * Logged-out session IDs
+     */
+    private final Cache<String, Boolean> revokedSessions;
+
+    /**
+     * User ID to the epoch second of its last deletion or password reset
+     */
+    private final Cache<Long, Long> revokedUsers;
+
+    private final Clock clock;
+
+    /**
+     * @param tokenTtl How long a session token lives, i.e. how long revocations are kept
+     */
+    public UserInfoCache(UserInfoCacheProperties properties, Duration tokenTtl, MeterRegistry meterRegistry) {
+        this(properties, tokenTtl, meterRegistry, Clock.systemUTC());
+    }
+
+    UserInfoCache(UserInfoCacheProperties properties, Duration tokenTtl, MeterRegistry meterRegistry, Clock clock) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        this.revokedSessions = Caffeine.newBuilder().expireAfterWrite(tokenTtl).build();
+        this.revokedUsers = Caffeine.newBuilder().expireAfterWrite(tokenTtl).build();
+        this.clock = clock;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userInfo");
+    }
+
+    /**
+     * Returns the cached user info for a session, loading it with the given function on a miss.
+     *
+     * Failed or empty lookups are not cached, so an unauthenticated session is re-checked
+     * on its next request.
+     *
+     * @param sessionId The JSESSIONID cookie value
+     * @param loader Fetches the user info from the Auth Service
+     * @return The user info map, or null if the loader returned null
+     */
+    public Map<String, Object> get(String sessionId, Function<String, Map<String, Object>> loader) {
+        return cache.get(sessionId, loader);
+    }
+
+    /**
+     * Returns the cached user info for a session without loading it.
+     *
+     * @param sessionId The JSESSIONID cookie value
+     * @return The user info map, or null on a miss
+     */
+    public Map<String, Object> getIfPresent(String sessionId) {
+        return cache.getIfPresent(sessionId);
+    }
+
+    /**
+     * Stores user info fetched outside of get(), e.g. by a non-blocking lookup.
+     *
+     * @param sessionId The JSESSIONID cookie value
+     * @param userInfo The user info map returned by /auth/user
+     */
+    public void put(String sessionId, Map<String, Object> userInfo) {
+        cache.put(sessionId, userInfo);
+    }
+
+    /**
+     * Removes a single session, e.g. after logout.
+     *
+     * @param sessionId The JSESSIONID cookie value
+     */
+    public void evictSession(String sessionId) {
+        cache.invalidate(sessionId);
+        revokedSessions.put(sessionId, Boolean.TRUE);
+    }
+
+    /**
+     * Removes every session belonging to a user, e.g. after deletion or a password reset.
+     *
+     * @param userId The ID of the user whose sessions should be dropped
+     */
+    public void evictUser(Long userId) {
+        revokedUsers.put(userId, clock.instant().getEpochSecond());
+        cache.asMap().values().removeIf(userInfo -> {
+            Object id = userInfo.get("id");
+            return id instanceof Number && ((Number) id).longValue() == userId;
+        });
+    }
+
+    /**
+     * Whether a session token must no longer be trusted: its session was logged out, or its
+     * user was deleted or had the password reset since (or in the same second as) it was issued.
+     *
+     * @param sessionId The JSESSIONID the token came with
+     * @param userInfo The user info the token carries
+     * @param issuedAt When the token was issued, in epoch seconds
+     * @return true if the token is revoked
+     */
+    public boolean isRevoked(String sessionId, Map<String, Object> userInfo, long issuedAt) {
+        if (revokedSessions.getIfPresent(sessionId) != null) {
+            return true;
+        }
+        if (!(userInfo.get("id") instanceof Number id)) {
+            return true;
+        }
+        Long revokedAt = revokedUsers.getIfPresent(id.longValue());
+        return revokedAt != null && issuedAt <= revokedAt;
+    }
+}
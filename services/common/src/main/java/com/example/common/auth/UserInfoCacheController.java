@@ -0,0 +1,48 @@
+package com.example.common.auth;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Internal endpoint that lets the Auth Service and Admin Service evict entries from this
+ * service's UserInfoCache.
+ *
+ * The endpoint has no authentication of its own: it is reachable only on the Docker network.
+ * Nginx answers every path containing /internal/ with 404, so it is never exposed through a
+ * proxied location.
+ *
+ * @RestController - Registered by UserInfoAutoConfiguration in every service that embeds the cache
+ */
+@RestController
+public class UserInfoCacheController {
+
+    static final String EVICT_PATH = "/internal/user-info-cache/evict";
+
+    private final UserInfoCache cache;
+
+    public UserInfoCacheController(UserInfoCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Evicts a session, a user, or both.
+     *
+     * @param sessionId JSESSIONID to evict (optional)
+     * @param userId ID of the user whose sessions to evict (optional)
+     * @return ResponseEntity with no content
+     */
+    @PostMapping(EVICT_PATH)
+    public ResponseEntity<Void> evict(
+            @RequestParam(required = false) String sessionId,
+            @RequestParam(required = false) Long userId) {
+        if (sessionId != null) {
+            cache.evictSession(sessionId);
+        }
+        if (userId != null) {
+            cache.evictUser(userId);
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
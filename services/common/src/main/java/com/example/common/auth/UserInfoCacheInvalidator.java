@@ -0,0 +1,64 @@
+package com.example.common.auth;
+
+/**
+ * Shared Library - User Info Cache Invalidator
+ *
+ * Each web service keeps its own UserInfoCache, so a logout or a change to a user has to be
+ * pushed to all of them. This component evicts the local cache (if this service has one)
+ * and notifies every peer listed in userinfo.cache.peers through their eviction endpoint.
+ *
+ * Notifications are fire-and-forget: a peer that is down simply keeps its entry until the TTL expires.
+ */
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+
+public class UserInfoCacheInvalidator {
+
+    private final WebClient webClient;
+
+    private final List<String> peers;
+
+    private final ObjectProvider<UserInfoCache> localCache;
+
+    public UserInfoCacheInvalidator(WebClient webClient, List<String> peers, ObjectProvider<UserInfoCache> localCache) {
+        this.webClient = webClient;
+        this.peers = peers;
+        this.localCache = localCache;
+    }
+
+    /**
+     * Drops a session from every cache, e.g. on logout.
+     *
+     * @param sessionId The JSESSIONID being invalidated
+     */
+    public void evictSession(String sessionId) {
+        localCache.ifAvailable(cache -> cache.evictSession(sessionId));
+        broadcast("sessionId", sessionId);
+    }
+
+    /**
+     * Drops every session of a user from every cache, e.g. after deletion or a password reset.
+     *
+     * @param userId The ID of the changed user
+     */
+    public void evictUser(Long userId) {
+        localCache.ifAvailable(cache -> cache.evictUser(userId));
+        broadcast("userId", userId);
+    }
+
+    private void broadcast(String param, Object value) {
+        for (String peer : peers) {
+            webClient.post()
+                    .uri(peer + UserInfoCacheController.EVICT_PATH + "?{param}={value}", param, value)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .subscribe(
+                        response -> {},
+                        error -> System.err.println("UserInfoCacheInvalidator: Failed to notify " + peer + ": " + error.getMessage())
+                    );
+        }
+    }
+}
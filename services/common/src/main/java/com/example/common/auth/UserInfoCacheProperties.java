@@ -0,0 +1,63 @@
+package com.example.common.auth;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration for the shared user-info cache.
+ *
+ * Bound from the "userinfo.cache" prefix in each service's application.properties, e.g.:
+ *   userinfo.cache.max-size=10000
+ *   userinfo.cache.ttl=60s
+ *   userinfo.cache.peers=http://product-catalog-service:8082,http://inventory-service:8081
+ */
+@ConfigurationProperties(prefix = "userinfo.cache")
+public class UserInfoCacheProperties {
+    /**
+     * Whether the cache (and its eviction endpoint) is registered in this service
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of sessions kept in memory
+     */
+    private long maxSize = 10_000;
+
+    /**
+     * How long a cached /auth/user response is trusted before it is fetched again
+     */
+    private Duration ttl = Duration.ofSeconds(60);
+
+    /**
+     * Base URL used to reach /auth/user (Nginx, which forwards to the Auth Service)
+     */
+    private String authUrl = "http://nginx:80";
+
+    /**
+     * Base URLs of the services whose caches must be told about logouts and user changes
+     */
+    private List<String> peers = new ArrayList<>();
+
+    public boolean isEnabled() { return enabled; }
+
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public long getMaxSize() { return maxSize; }
+
+    public void setMaxSize(long maxSize) { this.maxSize = maxSize; }
+
+    public Duration getTtl() { return ttl; }
+
+    public void setTtl(Duration ttl) { this.ttl = ttl; }
+
+    public String getAuthUrl() { return authUrl; }
+
+    public void setAuthUrl(String authUrl) { this.authUrl = authUrl; }
+
+    public List<String> getPeers() { return peers; }
+
+    public void setPeers(List<String> peers) { this.peers = peers; }
+}
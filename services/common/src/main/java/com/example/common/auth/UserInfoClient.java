@@ -0,0 +1,129 @@
+package com.example.common.auth;
+
+/**
+ * Shared Library - User Info Client
+ *
+ * Single entry point the web services use to resolve the current user from a JSESSIONID.
+ *
+ * Resolution Order:
+ * 1. A valid signed session token (AUTH_TOKEN cookie) on the current request - verified in-process;
+ *    it must belong to this JSESSIONID and must not be revoked (logout, user deletion, password reset)
+ * 2. The UserInfoCache, keyed by JSESSIONID
+ * 3. The Auth Service's /auth/user endpoint (via Nginx)
+ */
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+public class UserInfoClient {
+    /**
+     * WebClient for communicating with the Auth Service (via Nginx)
+     */
+    private final WebClient authClient;
+
+    /**
+     * Cache of user info keyed by session ID
+     */
+    private final UserInfoCache cache;
+
+    /**
+     * Verifier for signed session tokens, or null when no token secret is configured
+     */
+    private final SessionTokenCodec tokenCodec;
+
+    public UserInfoClient(WebClient authClient, UserInfoCache cache, SessionTokenCodec tokenCodec) {
+        this.authClient = authClient;
+        this.cache = cache;
+        this.tokenCodec = tokenCodec;
+    }
+
+    /**
+     * Retrieves the user info for a session, from the cache when possible.
+     *
+     * Error Handling:
+     * - Exceptions from the Auth Service call (e.g. 401 Unauthorized) are propagated to the caller
+     * - Nothing is cached when the call fails
+     *
+     * @param sessionId The JSESSIONID cookie value
+     * @return Map containing user information (id, email, firstName, lastName, type)
+     */
+    public Map<String, Object> getUserInfo(String sessionId) {
+        Map<String, Object> fromToken = userInfoFromToken(sessionId);
+        if (fromToken != null) {
+            return fromToken;
+        }
+        return cache.get(sessionId, this::fetchUserInfo);
+    }
+
+    /**
+     * Non-blocking variant of getUserInfo, for pages that load user info and page data concurrently.
+     *
+     * The session token and the cache are checked immediately on the calling thread (the token is
+     * read from the current servlet request, which other threads cannot see); only a cache miss
+     * turns into an asynchronous Auth Service call, whose result is cached when it arrives.
+     *
+     * @param sessionId The JSESSIONID cookie value
+     * @return A Mono emitting the user info, or an error if the Auth Service call fails
+     */
+    public Mono<Map<String, Object>> getUserInfoAsync(String sessionId) {
+        Map<String, Object> fromToken = userInfoFromToken(sessionId);
+        if (fromToken != null) {
+            return Mono.just(fromToken);
+        }
+        Map<String, Object> cached = cache.getIfPresent(sessionId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return requestUserInfo(sessionId)
+                .doOnNext(userInfo -> cache.put(sessionId, userInfo));
+    }
+
+    /**
+     * Reads and verifies the session token cookie of the request being handled on this thread.
+     *
+     * @param sessionId The JSESSIONID the token must belong to
+     * @return The user info carried by a valid, unrevoked token, or null if there is none
+     */
+    private Map<String, Object> userInfoFromToken(String sessionId) {
+        if (tokenCodec == null || sessionId == null) {
+            return null;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        if (request.getCookies() == null) {
+            return null;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (tokenCodec.getCookieName().equals(cookie.getName())) {
+                return tokenCodec.verify(cookie.getValue(), sessionId)
+                        .filter(token -> !cache.isRevoked(sessionId, token.userInfo(), token.issuedAt()))
+                        .map(SessionTokenCodec.Token::userInfo)
+                        .orElse(null);
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> fetchUserInfo(String sessionId) {
+        return requestUserInfo(sessionId).block();
+    }
+
+    private Mono<Map<String, Object>> requestUserInfo(String sessionId) {
+        return authClient.get()
+                .uri("/auth/user")
+                .cookie("JSESSIONID", sessionId)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {});
+    }
+}
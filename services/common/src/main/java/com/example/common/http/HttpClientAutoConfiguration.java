@@ -0,0 +1,144 @@
+package com.example.common.http;
+
+/**
+ * Shared Library - Inter-Service HTTP Client
+ *
+ * Every service used to build its own WebClient.create(...) with Reactor Netty defaults: no
+ * connect or response timeout, no compression, and no retries. This configuration gives all
+ * services one tuned client instead.
+ *
+ * What it provides:
+ * - One pooled ConnectionProvider (sized pool, bounded wait for a connection, idle eviction)
+ * - Connect and response timeouts, and gzip negotiation
+ * - A ClientHttpConnector bean, which Spring Boot's WebClient.Builder picks up; every client
+ *   built from that builder shares the pool and gets http.client.requests latency metrics
+ *   tagged by URI template
+ * - Retry with exponential backoff for GET requests that fail at the connection level
+ *   (GETs are idempotent; writes are never retried)
+ * - A dataAccessWebClient bean pointing at the Data Access Service
+ * - Smile codecs on every client; with http.client.smile=true, Data Access clients ask for
+ *   Smile (binary JSON) instead of JSON, which is smaller and cheaper to decode for the large
+ *   inventory and order lists (JSON stays acceptable as a fallback)
+ *
+ * Metrics:
+ * - Pool usage: reactor.netty.connection.provider.* (active, idle, pending connections)
+ * - Per-endpoint latency: http.client.requests, tagged with method, uri template and status
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.ClientHttpConnectorAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+@AutoConfiguration(before = ClientHttpConnectorAutoConfiguration.class)
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientAutoConfiguration {
+
+    private static final MediaType SMILE_MEDIA_TYPE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private static final MediaType APPLICATION_JSON_FALLBACK = MediaType.parseMediaType("application/json;q=0.9");
+
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnMissingBean
+    public ConnectionProvider interServiceConnectionProvider(HttpClientProperties properties) {
+        return ConnectionProvider.builder("inter-service")
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                .maxIdleTime(properties.getMaxIdleTime())
+                .evictInBackground(properties.getMaxIdleTime())
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ClientHttpConnector interServiceClientHttpConnector(ConnectionProvider connectionProvider,
+                                                               HttpClientProperties properties) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(properties.getResponseTimeout())
+                .compress(properties.isCompress());
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    @Bean
+    public WebClientCustomizer getRetryWebClientCustomizer(HttpClientProperties properties) {
+        return builder -> {
+            if (properties.getGetRetries() > 0) {
+                builder.filter(getRetryFilter(properties));
+            }
+        };
+    }
+
+    @Bean
+    public CodecCustomizer smileCodecCustomizer(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        ObjectMapper smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+        return configurer -> {
+            configurer.customCodecs().register(new Jackson2SmileDecoder(smileMapper));
+            configurer.customCodecs().register(new Jackson2SmileEncoder(smileMapper));
+        };
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(name = "dataAccessWebClient")
+    public WebClient dataAccessWebClient(WebClient.Builder webClientBuilder, HttpClientProperties properties) {
+        return dataAccessClient(webClientBuilder, properties.getDataAccessUrl(), properties);
+    }
+
+    /**
+     * Builds a client for the Data Access Service. Also used for clients that have their own
+     * base URL property, such as the inventory cache.
+     *
+     * @param webClientBuilder Spring Boot's builder (shared pool, codecs, retry filter)
+     * @param baseUrl          The Data Access Service URL
+     * @param properties       Shared client settings (decides whether Smile is requested)
+     * @return The client
+     */
+    public static WebClient dataAccessClient(WebClient.Builder webClientBuilder, String baseUrl,
+                                             HttpClientProperties properties) {
+        WebClient.Builder builder = webClientBuilder.baseUrl(baseUrl);
+        if (properties.isSmile()) {
+            // Prefer Smile, accept JSON from endpoints that only produce JSON (e.g. streaming exports)
+            builder.defaultHeader(HttpHeaders.ACCEPT,
+                    SMILE_MEDIA_TYPE.toString(), APPLICATION_JSON_FALLBACK.toString());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Retries GET requests that failed before a response arrived (connection refused or reset,
+     * connect timeout). Responses with an error status are returned to the caller unchanged.
+     */
+    private static ExchangeFilterFunction getRetryFilter(HttpClientProperties properties) {
+        return (request, next) -> {
+            if (!HttpMethod.GET.equals(request.method())) {
+                return next.exchange(request);
+            }
+            return next.exchange(request)
+                    .retryWhen(Retry.backoff(properties.getGetRetries(), properties.getRetryBackoff())
+                            .filter(WebClientRequestException.class::isInstance)
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.common.http;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the shared inter-service HTTP client.
+ *
+ * Bound from the "http.client" prefix in each service's application.properties, e.g.:
+ *   http.client.max-connections=200
+ *   http.client.response-timeout=10s
+ *   http.client.get-retries=2
+ *   http.client.smile=true
+ */
+@ConfigurationProperties(prefix = "http.client")
+public class HttpClientProperties {
+    /**
+     * Base URL of the Data Access Service (used by the dataAccessWebClient bean)
+     */
+    private String dataAccessUrl = "http://data-access-service:8085";
+
+    /**
+     * Maximum open connections per remote host
+     */
+    private int maxConnections = 200;
+
+    /**
+     * How long a request may wait for a free pooled connection
+     */
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Idle connections are closed after this time (kept below Tomcat's 20s keep-alive timeout,
+     * so the client never reuses a connection the server is about to close)
+     */
+    private Duration maxIdleTime = Duration.ofSeconds(15);
+
+    /**
+     * TCP connect timeout
+     */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Maximum time between sending a request and receiving the response headers
+     */
+    private Duration responseTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Whether to request gzip-compressed responses
+     */
+    private boolean compress = true;
+
+    /**
+     * Whether calls to the Data Access Service ask for Smile (binary JSON) responses instead of JSON
+     */
+    private boolean smile = false;
+
+    /**
+     * How often a GET is retried after a connection-level failure (0 disables retries)
+     */
+    private int getRetries = 2;
+
+    /**
+     * First retry delay; later retries back off exponentially
+     */
+    private Duration retryBackoff = Duration.ofMillis(100);
+
+    public String getDataAccessUrl() { return dataAccessUrl; }
+
+    public void setDataAccessUrl(String dataAccessUrl) { this.dataAccessUrl = dataAccessUrl; }
+
+    public int getMaxConnections() { return maxConnections; }
+
+    public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+    public Duration getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+
+    public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+
+    public Duration getMaxIdleTime() { return maxIdleTime; }
+
+    public void setMaxIdleTime(Duration maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+
+    public Duration getConnectTimeout() { return connectTimeout; }
+
+    public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+    public Duration getResponseTimeout() { return responseTimeout; }
+
+    public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+
+    public boolean isCompress() { return compress; }
+
+    public void setCompress(boolean compress) { this.compress = compress; }
+
+    public boolean isSmile() { return smile; }
+
+    public void setSmile(boolean smile) { this.smile = smile; }
+
+    public int getGetRetries() { return getRetries; }
+
+    public void setGetRetries(int getRetries) { this.getRetries = getRetries; }
+
+    public Duration getRetryBackoff() { return retryBackoff; }
+
+    public void setRetryBackoff(Duration retryBackoff) { this.retryBackoff = retryBackoff; }
+}
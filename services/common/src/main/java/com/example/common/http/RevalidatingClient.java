@@ -0,0 +1,105 @@
+package com.example.common.http;
+
+/**
+ * Shared Library - Revalidating HTTP Client
+ *
+ * The read endpoints of the Data Access Service return strong ETags. This client remembers the
+ * last body and ETag of every URI it fetched and sends the ETag back in If-None-Match on the
+ * next request. While the data is unchanged the server answers 304 Not Modified with an empty
+ * body, and the remembered body is returned without downloading or parsing anything.
+ *
+ * Usage Notes:
+ * - Only GET requests are cached; writes still go through the plain WebClient
+ * - Remembered bodies are shared between callers and must be treated as read-only
+ * - Responses without an ETag are returned as-is and not remembered
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+public class RevalidatingClient {
+
+    /**
+     * A remembered response.
+     *
+     * @param etag The ETag the body was served with
+     * @param body The decoded body
+     */
+    private record Entry(String etag, Object body) {
+    }
+
+    private final WebClient webClient;
+
+    /**
+     * URI to the last response received for it
+     */
+    private final Cache<String, Entry> entries;
+
+    /**
+     * @param webClient  The client used to send requests (its base URL applies)
+     * @param maxEntries How many distinct URIs to remember at most
+     */
+    public RevalidatingClient(WebClient webClient, long maxEntries) {
+        this.webClient = webClient;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    /**
+     * Fetches a resource, revalidating the remembered copy if there is one.
+     *
+     * @param uriTemplate  The request URI template (relative to the client's base URL)
+     * @param type         The body type
+     * @param uriVariables Values for the template variables
+     * @return The current body (possibly the remembered instance)
+     */
+    public <T> T get(String uriTemplate, ParameterizedTypeReference<T> type, Object... uriVariables) {
+        return getAsync(uriTemplate, type, uriVariables).block();
+    }
+
+    /**
+     * Non-blocking variant of {@link #get(String, ParameterizedTypeReference, Object...)}.
+     *
+     * Callers should pass variables separately rather than concatenating them into the
+     * template, so HTTP client metrics are tagged by template instead of by every distinct URI.
+     *
+     * @param uriTemplate  The request URI template (relative to the client's base URL)
+     * @param type         The body type
+     * @param uriVariables Values for the template variables
+     * @return A Mono emitting the current body
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> getAsync(String uriTemplate, ParameterizedTypeReference<T> type, Object... uriVariables) {
+        String uri = UriComponentsBuilder.fromUriString(uriTemplate).buildAndExpand(uriVariables).toUriString();
+        Entry cached = entries.getIfPresent(uri);
+        return webClient.get()
+                .uri(uriTemplate, uriVariables)
+                .headers(headers -> {
+                    if (cached != null) {
+                        headers.setIfNoneMatch(cached.etag());
+                    }
+                })
+                .exchangeToMono(response -> {
+                    if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED) && cached != null) {
+                        return response.releaseBody().thenReturn((T) cached.body());
+                    }
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return response.createException().flatMap(Mono::error);
+                    }
+                    String etag = response.headers().asHttpHeaders().getETag();
+                    return response.bodyToMono(type).doOnNext(body -> {
+                        if (etag != null) {
+                            entries.put(uri, new Entry(etag, body));
+                        } else {
+                            entries.invalidate(uri);
+                        }
+                    });
+                });
+    }
+}
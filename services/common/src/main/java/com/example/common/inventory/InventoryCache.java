@@ -0,0 +1,192 @@
+package com.example.common.inventory;
+
+/**
+ * Shared Library - Local Inventory Cache
+ *
+ * The catalog, inventory and price-management pages all render the full inventory list, and
+ * most of them render it again right after a POST. This cache keeps the list in local memory
+ * so page renders never leave the process, and refreshes it only when the inventory actually
+ * changed.
+ *
+ * Freshness:
+ * - A background thread long-polls the Data Access Service change feed
+ *   (/api/data/inventory/changes) with the ETag it last saw; the request returns as soon as
+ *   a new inventory snapshot is published, and the cache then refetches the list
+ * - Refetches are conditional GETs, so a redundant refresh costs a 304
+ * - Services call invalidate() after their own inventory writes, so the page rendered right
+ *   after a POST already shows the new values without waiting for the feed
+ * - Read-modify-write logic should use refresh() rather than getItems() for its reads
+ *
+ * The returned list is shared and must be treated as read-only.
+ */
+
+import com.example.common.http.RevalidatingClient;
+import com.example.contracts.InventoryItem;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClientRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class InventoryCache {
+
+    private static final ParameterizedTypeReference<List<InventoryItem>> INVENTORY_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private static final ParameterizedTypeReference<Map<String, Object>> CHANGE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final InventoryCacheProperties properties;
+
+    private final WebClient dataAccessClient;
+
+    private final RevalidatingClient dataAccessReads;
+
+    private volatile List<InventoryItem> items;
+
+    /**
+     * Serializes refreshes and invalidations, so an older fetch never overwrites a newer state.
+     * A lock rather than synchronized, because refreshes block on HTTP and synchronized would
+     * pin the carrier thread when requests run on virtual threads.
+     */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    /**
+     * ETag of the newest snapshot announced by the change feed
+     */
+    private volatile String knownEtag = "";
+
+    private volatile boolean running;
+
+    private Thread feedThread;
+
+    public InventoryCache(InventoryCacheProperties properties, WebClient dataAccessClient) {
+        this.properties = properties;
+        this.dataAccessClient = dataAccessClient;
+        this.dataAccessReads = new RevalidatingClient(dataAccessClient, 1);
+    }
+
+    /**
+     * Returns the locally cached inventory items, loading them on first use.
+     *
+     * @return The inventory items as returned by /api/data/tables/inventory
+     */
+    public List<InventoryItem> getItems() {
+        List<InventoryItem> current = items;
+        if (current == null) {
+            current = refresh();
+        }
+        return current;
+    }
+
+    /**
+     * Non-blocking variant of getItems(), for pages that load user info and page data concurrently.
+     *
+     * A warm cache answers immediately; a cold one is loaded on a worker thread.
+     *
+     * @return A Mono emitting the inventory items
+     */
+    public Mono<List<InventoryItem>> getItemsAsync() {
+        List<InventoryItem> current = items;
+        if (current != null) {
+            return Mono.just(current);
+        }
+        return Mono.fromCallable(this::getItems).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Revalidates the local copy against the Data Access Service and returns the result.
+     *
+     * @return The current inventory items
+     */
+    public List<InventoryItem> refresh() {
+        refreshLock.lock();
+        try {
+            List<InventoryItem> fresh = dataAccessReads.get("/api/data/tables/inventory", INVENTORY_TYPE);
+            items = fresh;
+            return fresh;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the local copy so the next getItems() refetches it, e.g. right after this service
+     * changed the inventory.
+     */
+    public void invalidate() {
+        refreshLock.lock();
+        try {
+            items = null;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Starts the change-feed thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        feedThread = new Thread(this::followChanges, "inventory-cache-feed");
+        feedThread.setDaemon(true);
+        feedThread.start();
+    }
+
+    /**
+     * Stops the change-feed thread.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (feedThread != null) {
+            feedThread.interrupt();
+            feedThread = null;
+        }
+    }
+
+    private void followChanges() {
+        long timeoutSeconds = Math.max(properties.getPollTimeout().toSeconds(), 1);
+        while (running) {
+            try {
+                Map<String, Object> change = dataAccessClient.get()
+                        .uri(uriBuilder -> uriBuilder.path("/api/data/inventory/changes")
+                                .queryParam("since", "{since}")
+                                .queryParam("timeoutSeconds", timeoutSeconds)
+                                .build(knownEtag))
+                        // The feed holds the request open, so allow longer than the shared response timeout
+                        .httpRequest(request -> {
+                            Object nativeRequest = request.getNativeRequest();
+                            if (nativeRequest instanceof HttpClientRequest httpClientRequest) {
+                                httpClientRequest.responseTimeout(properties.getPollTimeout().plusSeconds(5));
+                            }
+                        })
+                        .retrieve()
+                        .bodyToMono(CHANGE_TYPE)
+                        .block(properties.getPollTimeout().plusSeconds(10));
+
+                String etag = change == null ? null : (String) change.get("etag");
+                if (etag != null && !etag.equals(knownEtag)) {
+                    refresh();
+                    knownEtag = etag;
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                System.err.println("InventoryCache: Change feed request failed: " + e.getMessage());
+                try {
+                    Thread.sleep(properties.getRetryDelay().toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
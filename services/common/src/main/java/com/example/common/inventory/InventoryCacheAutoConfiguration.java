@@ -0,0 +1,28 @@
+package com.example.common.inventory;
+
+import com.example.common.http.HttpClientAutoConfiguration;
+import com.example.common.http.HttpClientProperties;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Registers the local inventory cache in services that opt in with inventory.cache.enabled=true.
+ *
+ * The change-feed thread is started with the application context and stopped when it closes.
+ */
+@AutoConfiguration(after = HttpClientAutoConfiguration.class)
+@EnableConfigurationProperties(InventoryCacheProperties.class)
+public class InventoryCacheAutoConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "inventory.cache", name = "enabled")
+    public InventoryCache inventoryCache(InventoryCacheProperties properties, WebClient.Builder webClientBuilder,
+                                         HttpClientProperties httpClientProperties) {
+        // Built from the shared builder, so it uses the pooled inter-service HTTP client
+        return new InventoryCache(properties, HttpClientAutoConfiguration.dataAccessClient(
+                webClientBuilder, properties.getDataAccessUrl(), httpClientProperties));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.common.inventory;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the shared local inventory cache.
+ *
+ * Bound from the "inventory.cache" prefix in each service's application.properties, e.g.:
+ *   inventory.cache.enabled=true
+ *   inventory.cache.poll-timeout=30s
+ */
+@ConfigurationProperties(prefix = "inventory.cache")
+public class InventoryCacheProperties {
+    /**
+     * Whether this service keeps a local inventory copy (off unless a service opts in)
+     */
+    private boolean enabled = false;
+
+    /**
+     * Base URL of the Data Access Service
+     */
+    private String dataAccessUrl = "http://data-access-service:8085";
+
+    /**
+     * How long one change-feed request may wait for a change
+     */
+    private Duration pollTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Pause before polling again after a failed poll
+     */
+    private Duration retryDelay = Duration.ofSeconds(5);
+
+    public boolean isEnabled() { return enabled; }
+
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getDataAccessUrl() { return dataAccessUrl; }
+
+    public void setDataAccessUrl(String dataAccessUrl) { this.dataAccessUrl = dataAccessUrl; }
+
+    public Duration getPollTimeout() { return pollTimeout; }
+
+    public void setPollTimeout(Duration pollTimeout) { this.pollTimeout = pollTimeout; }
+
+    public Duration getRetryDelay() { return retryDelay; }
+
+    public void setRetryDelay(Duration retryDelay) { this.retryDelay = retryDelay; }
+}
@@ -0,0 +1,40 @@
+package com.example.common.web;
+
+/**
+ * Shared Library - Page Timer
+ *
+ * Times how long a page controller waits for the data it renders (user info plus page data),
+ * published to Micrometer as "page.fetch" with a page tag. Comparing it with the latency of
+ * the individual downstream calls (http.client.requests) shows whether a page pays the sum
+ * of its calls or only the slowest one.
+ */
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.function.Supplier;
+
+public class PageTimer {
+
+    private final MeterRegistry meterRegistry;
+
+    public PageTimer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the data fetch of a page and records its duration.
+     *
+     * @param page  The page name used as tag (e.g. "catalog")
+     * @param fetch Loads the page data
+     * @return Whatever the fetch returned
+     */
+    public <T> T time(String page, Supplier<T> fetch) {
+        return Timer.builder("page.fetch")
+                .description("Time a page waits for the data it renders")
+                .tag("page", page)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(fetch);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.common.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Registers the PageTimer used by the page controllers of the web services.
+ */
+@AutoConfiguration(after = CompositeMeterRegistryAutoConfiguration.class)
+@ConditionalOnBean(MeterRegistry.class)
+public class PageTimerAutoConfiguration {
+
+    @Bean
+    public PageTimer pageTimer(MeterRegistry meterRegistry) {
+        return new PageTimer(meterRegistry);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.common.web;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat request handling on virtual threads when spring.threads.virtual.enabled=true.
+ *
+ * The web services call other services with blocking WebClient calls (.block()). On the default
+ * platform-thread pool every in-flight downstream call holds one of Tomcat's 200 threads; on
+ * virtual threads a blocked request only parks a cheap virtual thread, so concurrency is no
+ * longer capped by the thread pool.
+ *
+ * Spring Boot 3.1 has no built-in switch for this (it arrives in 3.2 under the same property
+ * name), so the executor is installed with a TomcatProtocolHandlerCustomizer. The virtual-thread
+ * executor is looked up reflectively, which keeps the module compiling for Java 17; on a Java 17
+ * runtime the property is ignored with a warning and Tomcat keeps its platform-thread pool.
+ */
+@AutoConfiguration
+@ConditionalOnClass(ProtocolHandler.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "spring.threads.virtual", name = "enabled")
+public class VirtualThreadsAutoConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("VirtualThreadsAutoConfiguration: Virtual threads need Java 21+, running on "
+                    + Runtime.version() + "; keeping the platform thread pool");
+            return null;
+        }
+    }
+}
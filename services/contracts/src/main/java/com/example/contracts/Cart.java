@@ -0,0 +1,19 @@
+package com.example.contracts;
+
+/**
+ * Shared Contracts - Cart
+ *
+ * A user's shopping cart, as persisted by the Product Catalog Service through /api/data/carts.
+ * Each user has at most one cart; an empty item list means the user has no cart.
+ */
+
+import java.util.List;
+
+/**
+ * Immutable cart.
+ *
+ * @param userId The owner
+ * @param items  The cart lines, in the order they were first added
+ */
+public record Cart(long userId, List<CartItem> items) {
+}
@@ -0,0 +1,17 @@
+package com.example.contracts;
+
+/**
+ * Shared Contracts - Cart Item
+ *
+ * One product in a shopping cart, as kept by the Product Catalog Service and stored by
+ * /api/data/carts. Prices are not part of a cart; they are applied when the cart is priced.
+ */
+
+/**
+ * Immutable cart line.
+ *
+ * @param productId  The product
+ * @param quantityKG The quantity in kg (two decimals)
+ */
+public record CartItem(long productId, double quantityKG) {
+}
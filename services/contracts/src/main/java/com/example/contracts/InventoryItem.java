@@ -0,0 +1,28 @@
+package com.example.contracts;
+
+/**
+ * Shared Contracts - Inventory Item
+ *
+ * One row of the inventory table, as served by /api/data/tables/inventory and kept in every
+ * service's local inventory cache.
+ *
+ * JSON field names are the lower-case column names the endpoint has always returned, so the
+ * wire format is unchanged for callers that still read the rows as maps.
+ */
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable inventory row.
+ *
+ * @param productId   The product ID
+ * @param description The product name
+ * @param stockKG     Stock on hand, in kilograms
+ * @param pricePerKG  Price per kilogram, in whole dollars
+ */
+public record InventoryItem(
+        @JsonProperty("productid") long productId,
+        @JsonProperty("description") String description,
+        @JsonProperty("stockkg") double stockKG,
+        @JsonProperty("priceperkg") int pricePerKG) {
+}
@@ -0,0 +1,37 @@
+package com.example.contracts;
+
+/**
+ * Shared Contracts - Order
+ *
+ * An order with its items, as served by /api/data/orders/all and /api/data/orders/user/{userId}.
+ *
+ * The customer fields are only filled in for the all-orders (admin) listing; a user's own
+ * listing leaves them null and they are omitted from the JSON, as before.
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Immutable order with its items.
+ *
+ * @param orderId         Global order ID (also the pagination cursor)
+ * @param userOrderId     Per-user order number shown to customers
+ * @param userId          The customer's user ID (admin listing only)
+ * @param userName        The customer's full name (admin listing only)
+ * @param deliveryAddress Delivery address
+ * @param totalPrice      Order total
+ * @param items           The ordered products
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Order(
+        @JsonProperty("orderid") long orderId,
+        @JsonProperty("userorderid") int userOrderId,
+        @JsonProperty("userid") Long userId,
+        @JsonProperty("username") String userName,
+        @JsonProperty("deliveryaddress") String deliveryAddress,
+        @JsonProperty("totalprice") double totalPrice,
+        @JsonProperty("items") List<OrderItem> items) {
+}
@@ -0,0 +1,22 @@
+package com.example.contracts;
+
+/**
+ * Shared Contracts - Order Item
+ *
+ * One line of an {@link Order}: a product and the quantity and price it was ordered at.
+ */
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable order line.
+ *
+ * @param description The product name
+ * @param quantityKG  Ordered quantity, in kilograms
+ * @param pricePerKG  Price per kilogram at the time of the order
+ */
+public record OrderItem(
+        @JsonProperty("description") String description,
+        @JsonProperty("quantitykg") double quantityKG,
+        @JsonProperty("pricepkg") int pricePerKG) {
+}
@@ -0,0 +1,43 @@
+package com.example.contracts;
+
+/**
+ * Shared Contracts - User
+ *
+ * A user's public profile, as served by /api/data/users. Password hashes are never part of
+ * this contract.
+ */
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Immutable user profile.
+ *
+ * @param id        The user ID
+ * @param firstName First name
+ * @param lastName  Last name
+ * @param email     Email address (the login name)
+ * @param phone     Phone number
+ * @param type      User type: 1 = regular user, 2 = admin
+ */
+public record User(long id, String firstName, String lastName, String email, String phone, int type) {
+
+    /**
+     * @return true if the user is an administrator (type 2)
+     */
+    @JsonIgnore
+    public boolean isAdmin() {
+        return type == 2;
+    }
+
+    /**
+     * @return A human-readable name for the user type
+     */
+    @JsonIgnore
+    public String getTypeAsString() {
+        return switch (type) {
+            case 1 -> "Regular User";
+            case 2 -> "Admin";
+            default -> "Unknown";
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.dataaccessservice.config;
+
+/**
+ * Data Access Service - Read Replica Routing
+ *
+ * By default every query goes to the single primary pool that Spring Boot configures from
+ * spring.datasource.*. When replica.datasource.url is set, this configuration replaces that pool
+ * with two (primary and replica) behind one routing DataSource:
+ * - Read-only transactions (@Transactional(readOnly = true), or a read-only TransactionTemplate
+ *   such as the one the streaming exports use) run on the replica
+ * - Everything else, including all writes and the inventory snapshot reload, runs on the primary
+ *
+ * How the routing works:
+ * - The routing DataSource looks at the current transaction's read-only flag to pick a pool
+ * - It is wrapped in a LazyConnectionDataSourceProxy, because the transaction manager asks for a
+ *   connection before the read-only flag is published; the proxy defers the real checkout until
+ *   the first statement, when the flag is known
+ *
+ * Consistency:
+ * - The read endpoints hand out ETags from versions bumped after the primary commits. A replica
+ *   that lags could serve old rows under a new ETag, so the replica must apply commits
+ *   synchronously (synchronous_commit=remote_apply on the primary, as in docker-compose.replica.yml)
+ *
+ * Each pool is a separate HikariDataSource with its own pool-name, so the hikaricp.connections.*
+ * metrics are reported per pool.
+ */
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(prefix = "replica.datasource", name = "url")
+public class ReadReplicaConfig {
+
+    private enum Target { PRIMARY, REPLICA }
+
+    /**
+     * The primary pool, built from the same spring.datasource.* properties Spring Boot would use.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * The replica pool; pool settings are bound from replica.datasource.hikari.*.
+     */
+    @Bean
+    @ConfigurationProperties("replica.datasource.hikari")
+    public HikariDataSource replicaDataSource(@Value("${replica.datasource.url}") String url,
+                                              @Value("${replica.datasource.username}") String username,
+                                              @Value("${replica.datasource.password}") String password) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+    }
+
+    /**
+     * The DataSource everything else (JdbcTemplate, the transaction manager) uses.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                        ? Target.REPLICA : Target.PRIMARY;
+            }
+        };
+        routing.setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+
+        System.out.println("ReadReplicaConfig: Routing read-only transactions to the replica");
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
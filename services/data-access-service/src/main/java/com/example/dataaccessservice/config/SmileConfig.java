@@ -0,0 +1,48 @@
+package com.example.dataaccessservice.config;
+
+/**
+ * Data Access Service - Binary (Smile) Responses
+ *
+ * Every read endpoint can answer in Smile, Jackson's binary encoding of the JSON data model, as
+ * well as in JSON. Smile carries the same objects and field names, but numbers are binary and
+ * repeated field names (the same keys in every inventory row or order) are sent once and then
+ * back-referenced, so payloads are smaller and faster to encode and decode.
+ *
+ * Content negotiation:
+ * - Callers that send "Accept: application/x-jackson-smile" get Smile
+ * - Everyone else (browsers, curl, callers without an Accept header) still gets JSON; the Smile
+ *   converter is registered after the JSON one, so JSON wins whenever both are acceptable
+ * - Request bodies can be sent in either format (Content-Type decides)
+ *
+ * The shared HTTP client in the common module sends the Accept header when
+ * http.client.smile=true.
+ */
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class SmileConfig implements WebMvcConfigurer {
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    /**
+     * @param objectMapperBuilder Spring Boot's builder, so Smile uses the same Jackson settings as JSON
+     */
+    public SmileConfig(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Appended last: JSON stays the default representation
+        converters.add(new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.factory(new SmileFactory()).build()));
+    }
+}
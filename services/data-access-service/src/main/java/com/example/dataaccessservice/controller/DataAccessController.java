@@ -25,13 +25,27 @@ package com.example.dataaccessservice.controller;
  * - Schema Isolation: Database schema changes only affect one service
  */
 
+import com.example.contracts.Cart;
+import com.example.contracts.Order;
+import com.example.contracts.User;
 import com.example.dataaccessservice.service.DatabaseService;
+import com.example.dataaccessservice.service.IdempotencyKeyConflictException;
+import com.example.dataaccessservice.service.InsufficientStockException;
+import com.example.dataaccessservice.service.InventorySnapshotService;
+import com.example.dataaccessservice.service.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * REST controller that exposes database operations as HTTP endpoints.
@@ -45,6 +59,16 @@ import java.util.Map;
 @RequestMapping("/api/data")
 public class DataAccessController {
 
+    /**
+     * Page size of the order listings when the caller does not pass a limit
+     */
+    private static final int DEFAULT_ORDERS_PAGE_SIZE = 50;
+
+    /**
+     * Largest page of orders a single request may ask for
+     */
+    private static final int MAX_ORDERS_PAGE_SIZE = 200;
+
     /**
      * The DatabaseService handles all database operations.
      *
@@ -58,6 +82,21 @@ public class DataAccessController {
     @Autowired
     private DatabaseService databaseService;
 
+    /**
+     * Holds the in-memory, versioned copy of the inventory table.
+     */
+    @Autowired
+    private InventorySnapshotService inventorySnapshotService;
+
+    /**
+     * Version counters behind the ETags of the read endpoints.
+     *
+     * Every GET endpoint below returns a strong ETag. Callers that send it back in
+     * If-None-Match get an empty 304 Not Modified response while the resource is unchanged.
+     */
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     /**
      * Retrieves a list of all tables in the database.
      *
@@ -82,14 +121,59 @@ public class DataAccessController {
      * - Flexible querying capabilities for other services
      * - Raw data access for administrative interfaces
      *
+     * The inventory table is served from an in-memory snapshot together with an ETag and an
+     * X-Inventory-Version header. Callers that send the ETag back in If-None-Match get an
+     * empty 304 Not Modified response while the inventory is unchanged.
+     *
      * @GetMapping - Maps HTTP GET requests to "/api/data/tables/{tableName}"
      * @PathVariable - Extracts the table name from the URL path
      * @param tableName - The name of the table to query
-     * @return ResponseEntity containing a list of records as maps
+     * @param webRequest - The current request, used to evaluate If-None-Match
+     * @return ResponseEntity containing a list of records (typed inventory items, or maps for other tables)
      */
     @GetMapping("/tables/{tableName}")
-    public ResponseEntity<List<Map<String, Object>>> getTableData(@PathVariable String tableName) {
-        return ResponseEntity.ok(databaseService.getTableData(tableName));
+    public ResponseEntity<List<?>> getTableData(@PathVariable String tableName, WebRequest webRequest) {
+        if ("inventory".equalsIgnoreCase(tableName)) {
+            InventorySnapshotService.Snapshot snapshot = inventorySnapshotService.getSnapshot();
+            if (webRequest.checkNotModified(snapshot.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(snapshot.etag())
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .header("X-Inventory-Version", String.valueOf(snapshot.version()))
+                        .build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(snapshot.etag())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .header("X-Inventory-Version", String.valueOf(snapshot.version()))
+                    .body(snapshot.items());
+        }
+        return conditional(webRequest, resourceVersions.etag(ResourceVersions.table(tableName)),
+                () -> databaseService.getTableData(tableName));
+    }
+
+    /**
+     * Streams all data from a specific table.
+     *
+     * Returns the same JSON array as {@link #getTableData}, but rows are read from the database
+     * with a fetch size and written to the response one at a time, so memory use does not grow
+     * with the table and the first bytes are sent while the query is still running.
+     *
+     * Meant for exports and other full reads of large tables. There is no ETag; a failure
+     * halfway through shows up as a truncated (invalid) JSON body.
+     *
+     * @GetMapping - Maps HTTP GET requests to "/api/data/tables/{tableName}/stream"
+     * @PathVariable - Extracts the table name from the URL path
+     * @param tableName - The name of the table to stream
+     * @return ResponseEntity streaming a JSON array of records, or 404 if there is no such table
+     */
+    @GetMapping("/tables/{tableName}/stream")
+    public ResponseEntity<StreamingResponseBody> streamTableData(@PathVariable String tableName) {
+        String table = databaseService.findTable(tableName);
+        if (table == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return streaming(out -> databaseService.streamTableData(table, out));
     }
 
     /**
@@ -128,17 +212,94 @@ public class DataAccessController {
      * - The Order Service handles order business logic
      * - This service handles the database persistence
      *
+     * Idempotency:
+     * - With an Idempotency-Key header, the order is created at most once per key; a retry
+     *   answers with the ID of the order the first request created
+     *
      * @PostMapping - Maps HTTP POST requests to "/api/data/orders/create"
      * @RequestBody - Binds the HTTP request body to the orderData parameter
+     * @RequestHeader - Binds the optional Idempotency-Key header
      * @param orderData - Map containing order information (user ID, items, etc.)
+     * @param idempotencyKey - The client's key for this order (optional)
      * @return ResponseEntity containing the newly created order ID
      */
     @PostMapping("/orders/create")
-    public ResponseEntity<Map<String, Object>> createOrder(@RequestBody Map<String, Object> orderData) {
-        Long orderId = databaseService.createOrder(orderData);
+    public ResponseEntity<Map<String, Object>> createOrder(
+            @RequestBody Map<String, Object> orderData,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        Long orderId = databaseService.createOrder(orderData, idempotencyKey);
         return ResponseEntity.ok(Map.of("orderId", orderId));
     }
 
+    /**
+     * Processes a complete checkout in a single transaction.
+     *
+     * This endpoint:
+     * - Decrements stock for every item in the basket
+     * - Creates the order record and its order items
+     * - Commits both together, so a failure at any step leaves stock and orders untouched
+     * - Answers 409 Conflict listing every product that is short when stock is insufficient
+     * - Answers 400 Bad Request for an empty basket or an otherwise invalid request
+     *
+     * In our microservices architecture:
+     * - The Product Catalog Service calls this once per checkout (one network hop)
+     * - It replaces the update-batch + orders/create sequence, which ran two transactions
+     *
+     * Idempotency:
+     * - With an Idempotency-Key header, a retried checkout (double click, client or proxy
+     *   retry) answers with the original order ID and does not take stock again; the unique
+     *   ORDERS.idempotencykey column enforces this even for concurrent retries
+     *
+     * @PostMapping - Maps HTTP POST requests to "/api/data/checkout"
+     * @RequestBody - Binds the HTTP request body to the checkoutData parameter
+     * @RequestHeader - Binds the optional Idempotency-Key header
+     * @param checkoutData - Map containing userId, deliveryAddress, totalPrice and items
+     * @param idempotencyKey - The client's key for this checkout (optional)
+     * @return ResponseEntity containing the newly created order ID
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<Map<String, Object>> checkout(
+            @RequestBody Map<String, Object> checkoutData,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        Long orderId = databaseService.checkout(checkoutData, idempotencyKey);
+        return ResponseEntity.ok(Map.of("orderId", orderId));
+    }
+
+    /**
+     * Retrieves a user's stored shopping cart.
+     *
+     * In our microservices architecture:
+     * - The Product Catalog Service keeps carts in memory and reads a cart from here only when
+     *   the user's cart is not in memory (first use, or after idle eviction or a restart)
+     *
+     * @GetMapping - Maps HTTP GET requests to "/api/data/carts/{userId}"
+     * @PathVariable - Extracts the user ID from the URL path
+     * @param userId - The ID of the cart's owner
+     * @return ResponseEntity containing the cart (with no items if none is stored)
+     */
+    @GetMapping("/carts/{userId}")
+    public ResponseEntity<Cart> getCart(@PathVariable Long userId) {
+        return ResponseEntity.ok(databaseService.getCart(userId));
+    }
+
+    /**
+     * Stores many shopping carts in one transaction.
+     *
+     * This endpoint:
+     * - Receives the Product Catalog Service's periodic write-behind batches
+     * - Upserts carts with items and deletes empty ones
+     *
+     * @PutMapping - Maps HTTP PUT requests to "/api/data/carts"
+     * @RequestBody - Binds the HTTP request body to the carts parameter
+     * @param carts - The carts to store
+     * @return ResponseEntity with no content but success status
+     */
+    @PutMapping("/carts")
+    public ResponseEntity<Void> saveCarts(@RequestBody List<Cart> carts) {
+        databaseService.saveCarts(carts);
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * Updates multiple inventory items in a single batch operation.
      *
@@ -164,37 +325,142 @@ public class DataAccessController {
     }
 
     /**
-     * Retrieves all orders for a specific user.
+     * Adds stock to multiple inventory items in a single batch operation.
+     *
+     * This endpoint:
+     * - Processes restocks from the Inventory Service
+     * - Applies each quantity as an increment in SQL, so concurrent restocks never
+     *   overwrite each other
+     * - Runs all updates as one JDBC batch in a single transaction
+     *
+     * @PostMapping - Maps HTTP POST requests to "/api/data/inventory/add-stock-batch"
+     * @RequestBody - Binds the HTTP request body to the additions parameter
+     * @param additions - List of maps containing productId and quantity (kg to add)
+     * @return ResponseEntity with no content but success status
+     */
+    @PostMapping("/inventory/add-stock-batch")
+    public ResponseEntity<Void> addStockBatch(@RequestBody List<Map<String, Object>> additions) {
+        databaseService.addStockBatch(additions);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Updates the prices of many inventory items in a single batch operation.
+     *
+     * This endpoint:
+     * - Accepts the whole price sheet as a map of product ID to new price per kg
+     * - Applies it as one JDBC batch in a single transaction
+     * - Reports per product whether a row was updated (unknown IDs do not fail the batch)
+     *
+     * @PostMapping - Maps HTTP POST requests to "/api/data/inventory/update-prices"
+     * @RequestBody - Binds the HTTP request body to the prices parameter
+     * @param prices - Map of product ID to new price per kg
+     * @return ResponseEntity containing one {productId, updated} result per product
+     */
+    @PostMapping("/inventory/update-prices")
+    public ResponseEntity<List<Map<String, Object>>> updatePrices(@RequestBody Map<Long, Integer> prices) {
+        return ResponseEntity.ok(databaseService.updatePrices(prices));
+    }
+
+    /**
+     * Inventory change feed (long-poll).
+     *
+     * This endpoint:
+     * - Lets services that keep a local inventory copy learn when it becomes stale
+     * - Returns at once if the caller's ETag is no longer current
+     * - Otherwise holds the request until the inventory changes or the timeout expires
+     *
+     * The response always describes the current snapshot ({"version": ..., "etag": ...});
+     * callers refresh when the returned ETag differs from the one they hold.
+     *
+     * @GetMapping - Maps HTTP GET requests to "/api/data/inventory/changes"
+     * @RequestParam - The caller's ETag and the maximum wait in seconds
+     * @param since - The ETag of the caller's inventory copy (empty when it has none)
+     * @param timeoutSeconds - How long to wait for a change
+     * @return DeferredResult completed with the current inventory version and ETag
+     */
+    @GetMapping("/inventory/changes")
+    public DeferredResult<Map<String, Object>> awaitInventoryChange(
+            @RequestParam(defaultValue = "") String since,
+            @RequestParam(defaultValue = "30") long timeoutSeconds) {
+        long timeoutMillis = Math.min(Math.max(timeoutSeconds, 1), 60) * 1000;
+        return inventorySnapshotService.awaitChange(since, timeoutMillis);
+    }
+
+    /**
+     * Retrieves a page of orders for a specific user, newest first.
      *
      * This endpoint:
      * - Provides order history for a specific user
      * - Returns order details including items and status
      * - Used by both customer-facing and admin interfaces
      *
+     * Pagination:
+     * - Keyset-based on the order ID: a page holds the newest orders with an ID below "before"
+     * - Omit "before" for the first page; pass the last order ID of a page to get the next one
+     * - A page shorter than "limit" is the last one
+     * - "limit" defaults to 50 and is capped at 200
+     *
      * @GetMapping - Maps HTTP GET requests to "/api/data/orders/user/{userId}"
      * @PathVariable - Extracts the user ID from the URL path
+     * @RequestParam - The pagination cursor and page size
      * @param userId - The ID of the user whose orders to retrieve
+     * @param before - Only orders with a smaller ID are returned (optional)
+     * @param limit - The maximum number of orders to return
+     * @param webRequest - The current request, used to evaluate If-None-Match
      * @return ResponseEntity containing a list of order records
      */
     @GetMapping("/orders/user/{userId}")
-    public ResponseEntity<List<Map<String, Object>>> getUserOrders(@PathVariable Long userId) {
-        return ResponseEntity.ok(databaseService.getUserOrders(userId));
+    public ResponseEntity<List<Order>> getUserOrders(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + DEFAULT_ORDERS_PAGE_SIZE) int limit,
+            WebRequest webRequest) {
+        int pageSize = ordersPageSize(limit);
+        return conditional(webRequest, resourceVersions.etag(ResourceVersions.userOrders(userId)),
+                () -> databaseService.getUserOrders(userId, before, pageSize));
     }
 
     /**
-     * Retrieves all orders in the system.
+     * Retrieves a page of all orders in the system, newest first.
      *
      * This endpoint:
-     * - Provides a complete view of all orders
+     * - Provides a complete view of all orders, one page at a time
      * - Used primarily by administrative interfaces
      * - Supports order management and reporting
      *
+     * Pagination works as for {@link #getUserOrders}.
+     *
      * @GetMapping - Maps HTTP GET requests to "/api/data/orders/all"
-     * @return ResponseEntity containing a list of all order records
+     * @RequestParam - The pagination cursor and page size
+     * @param before - Only orders with a smaller ID are returned (optional)
+     * @param limit - The maximum number of orders to return
+     * @param webRequest - The current request, used to evaluate If-None-Match
+     * @return ResponseEntity containing a list of order records
      */
     @GetMapping("/orders/all")
-    public ResponseEntity<List<Map<String, Object>>> getAllOrders() {
-        return ResponseEntity.ok(databaseService.getAllOrders());
+    public ResponseEntity<List<Order>> getAllOrders(
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + DEFAULT_ORDERS_PAGE_SIZE) int limit,
+            WebRequest webRequest) {
+        int pageSize = ordersPageSize(limit);
+        return conditional(webRequest, resourceVersions.etag(ResourceVersions.ALL_ORDERS),
+                () -> databaseService.getAllOrders(before, pageSize));
+    }
+
+    /**
+     * Streams every order in the system, newest first.
+     *
+     * Unlike {@link #getAllOrders} this is not paginated: it is meant for exports and reports
+     * that need the full order history. Orders are written to the response as they are read,
+     * in the same JSON shape, so memory use stays constant however many orders there are.
+     *
+     * @GetMapping - Maps HTTP GET requests to "/api/data/orders/all/stream"
+     * @return ResponseEntity streaming a JSON array of order records
+     */
+    @GetMapping("/orders/all/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllOrders() {
+        return streaming(databaseService::streamAllOrders);
     }
 
     /**
@@ -220,11 +486,26 @@ public class DataAccessController {
      * - Supports user management and reporting
      *
      * @GetMapping - Maps HTTP GET requests to "/api/data/users"
+     * @param webRequest - The current request, used to evaluate If-None-Match
      * @return ResponseEntity containing a list of all user records
      */
     @GetMapping("/users")
-    public ResponseEntity<List<Map<String, Object>>> getAllUsers() {
-        return ResponseEntity.ok(databaseService.getAllUsers());
+    public ResponseEntity<List<User>> getAllUsers(WebRequest webRequest) {
+        return conditional(webRequest, resourceVersions.etag(ResourceVersions.USERS),
+                databaseService::getAllUsers);
+    }
+
+    /**
+     * Streams all users in the system.
+     *
+     * Same JSON as {@link #getAllUsers}, written row by row (see {@link #streamTableData}).
+     *
+     * @GetMapping - Maps HTTP GET requests to "/api/data/users/stream"
+     * @return ResponseEntity streaming a JSON array of user records
+     */
+    @GetMapping("/users/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return streaming(databaseService::streamAllUsers);
     }
 
     /**
@@ -343,4 +624,81 @@ public class DataAccessController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
+
+    /**
+     * Answers a checkout or stock update that asks for more than is in stock.
+     *
+     * @ExceptionHandler - Handles the exception for every endpoint of this controller
+     * @param e - The exception, listing every product that is short
+     * @return 409 Conflict with an error message and the per-product shortfalls
+     *         (productId, requestedKG, availableKG)
+     */
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Map<String, Object>> handleInsufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage(), "shortfalls", e.getShortfalls()));
+    }
+
+    /**
+     * Answers a request the service rejects as invalid (an empty basket, a non-positive
+     * quantity, a malformed idempotency key, ...).
+     *
+     * @ExceptionHandler - Handles the exception for every endpoint of this controller
+     * @param e - The exception, describing what is wrong with the request
+     * @return 400 Bad Request with an error message
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    /**
+     * Answers an order or checkout whose idempotency key belongs to another user's order.
+     *
+     * @ExceptionHandler - Handles the exception for every endpoint of this controller
+     * @param e - The exception
+     * @return 422 Unprocessable Entity with an error message (409 is reserved for stock shortfalls)
+     */
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyKeyConflict(IdempotencyKeyConflictException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error", e.getMessage()));
+    }
+
+    /**
+     * Clamps a requested orders page size to 1..MAX_ORDERS_PAGE_SIZE.
+     */
+    private static int ordersPageSize(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_ORDERS_PAGE_SIZE);
+    }
+
+    /**
+     * Wraps a body writer in a JSON response that is written after the handler returns.
+     *
+     * The writer runs on Spring MVC's async executor (spring.task.execution.*), whose pool size
+     * also caps how many streaming queries hold a connection at once; spring.mvc.async.request-timeout
+     * bounds how long a single stream may take.
+     */
+    private static ResponseEntity<StreamingResponseBody> streaming(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Answers a GET request conditionally.
+     *
+     * The ETag is taken before the body is loaded, so a concurrent write can at worst make the
+     * response carry an older ETag than its data, never a newer one.
+     *
+     * Responses vary by Accept, since the same data is served as JSON or Smile (see SmileConfig).
+     *
+     * @param webRequest - The current request, used to evaluate If-None-Match
+     * @param etag - The current ETag of the resource
+     * @param body - Loads the body when the caller's copy is stale
+     * @return 304 Not Modified when the caller's ETag matches, otherwise 200 with the body
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest webRequest, String etag, Supplier<T> body) {
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(body.get());
+    }
 }
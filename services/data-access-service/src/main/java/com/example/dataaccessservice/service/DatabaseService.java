@@ -1,30 +1,93 @@
 package com.example.dataaccessservice.service;
 
+import com.example.contracts.Cart;
+import com.example.contracts.CartItem;
+import com.example.contracts.Order;
+import com.example.contracts.OrderItem;
+import com.example.contracts.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 public class DatabaseService {
 
+    private static final TypeReference<List<CartItem>> CART_ITEMS_TYPE = new TypeReference<>() {};
+
+    // Length of the ORDERS.idempotencykey column
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    public List<Map<String, Object>> getTableData(String tableName) {
+    @Autowired
+    private UserChangeNotifier userChangeNotifier;
+
+    @Autowired
+    private InventorySnapshotService inventorySnapshotService;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private JsonRowStreamer jsonRowStreamer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Present only with inventory.reservations.enabled=true; stock changes then go through it
+    @Autowired(required = false)
+    private StockReservationEngine reservationEngine;
+
+    // Inventory is not read here: the controller serves it from the in-memory snapshot, whose
+    // reloads must stay on the primary (read-only transactions may go to the read replica)
+    @Transactional(readOnly = true)
+    public List<?> getTableData(String tableName) {
         String sql = String.format("SELECT * FROM %s", tableName);
         return jdbcTemplate.queryForList(sql);
     }
 
+    // Looks a table name up case-insensitively; returns its exact name, or null if there is no such table
+    public String findTable(String tableName) {
+        return getAllTables().stream()
+                .filter(name -> name.equalsIgnoreCase(tableName))
+                .findFirst()
+                .orElse(null);
+    }
+
+    // Streams a whole table as a JSON array without loading it into memory
+    public void streamTableData(String tableName, OutputStream out) {
+        // The name is interpolated into the SQL, so it must be an existing table
+        String table = findTable(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown table: " + tableName);
+        }
+        jsonRowStreamer.stream(out, String.format("SELECT * FROM \"%s\"", table), new ColumnMapRowMapper());
+    }
+
     public List<String> getAllTables() {
         String sql = "SELECT table_name FROM information_schema.tables WHERE table_schema = 'public'";
         return jdbcTemplate.queryForList(sql, String.class);
@@ -37,11 +100,15 @@ public class DatabaseService {
 
             if (updateData.containsKey("stockKG")) {
                 Double stockKG = ((Number) updateData.get("stockKG")).doubleValue();
-                String sql = "UPDATE inventory SET stockkg = ? WHERE productid = ?";
-                int rowsAffected = jdbcTemplate.update(sql, stockKG, productId);
-
-                if (rowsAffected == 0) {
-                    throw new RuntimeException("Product not found with ID: " + productId);
+                if (reservationEngine != null) {
+                    reservationEngine.setStock(productId, stockKG);
+                } else {
+                    String sql = "UPDATE inventory SET stockkg = ? WHERE productid = ?";
+                    int rowsAffected = jdbcTemplate.update(sql, stockKG, productId);
+
+                    if (rowsAffected == 0) {
+                        throw new RuntimeException("Product not found with ID: " + productId);
+                    }
                 }
             }
 
@@ -54,49 +121,105 @@ public class DatabaseService {
                     throw new RuntimeException("Product not found with ID: " + productId);
                 }
             }
+
+            inventorySnapshotService.inventoryChanged();
         } else {
             throw new RuntimeException("Updates to table " + tableName + " are not supported");
         }
     }
 
+    /**
+     * An ORDERS row: either just inserted, or the existing order of an idempotency key.
+     */
+    private record OrderRow(long orderId, boolean created) {
+    }
+
+    /**
+     * Creates an order, at most once per idempotency key.
+     *
+     * @param orderData      userId, deliveryAddress, totalPrice and items
+     * @param idempotencyKey The client's key for this order, or null
+     * @return The ID of the new order, or of the order already created with this key
+     */
     @Transactional
-    public Long createOrder(Map<String, Object> orderData) {
-        // Verify user exists
-        Long userId = ((Number) orderData.get("userId")).longValue();
-        String checkUserSql = "SELECT COUNT(*) FROM USERS WHERE userId = ?";
-        int userCount = jdbcTemplate.queryForObject(checkUserSql, Integer.class, userId);
-        if (userCount == 0) {
-            throw new RuntimeException("User not found with ID: " + userId);
+    public Long createOrder(Map<String, Object> orderData, String idempotencyKey) {
+        OrderRow order = insertOrder(orderData, idempotencyKey);
+        if (order.created()) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
+            insertOrderItems(order.orderId(), items, ((Number) orderData.get("userId")).longValue());
         }
+        return order.orderId();
+    }
+
+    /**
+     * Inserts the ORDERS row of an order.
+     *
+     * With an idempotency key, a second insert with the same key waits on the unique index
+     * until the first transaction ends; if that one committed, the existing order is returned
+     * instead (created = false) and the caller must not take stock or write items again.
+     */
+    private OrderRow insertOrder(Map<String, Object> orderData, String idempotencyKey) {
+        Long userId = ((Number) orderData.get("userId")).longValue();
 
         // Get the delivery address as string
         String deliveryAddress = orderData.get("deliveryAddress").toString();
         if (deliveryAddress == null || deliveryAddress.trim().isEmpty()) {
             throw new IllegalArgumentException("deliveryAddress is required");
         }
-
-        // Calculate the next userOrderId for this user
-        String userOrderIdSql = "SELECT COALESCE(MAX(userOrderId), 0) + 1 FROM ORDERS WHERE userId = ?";
-        Integer userOrderId = jdbcTemplate.queryForObject(userOrderIdSql, Integer.class, userId);
-
-        // Insert into ORDERS table
-        String orderSql = "INSERT INTO ORDERS (userID, userOrderId, deliveryAddress, totalPrice) VALUES (?, ?, ?, ?) RETURNING orderID";
+        if (!(orderData.get("items") instanceof List<?> items) || items.isEmpty()) {
+            throw new IllegalArgumentException("An order needs at least one item");
+        }
+        // Checked before the ORDERS row is written, so no order gets a non-positive line
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> lines = (List<Map<String, Object>>) items;
+        quantitiesByProduct(lines);
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
 
         // Keep totalPrice as double to preserve decimal values
         Number totalPriceObj = (Number) orderData.get("totalPrice");
         double totalPrice = totalPriceObj.doubleValue();
 
-        Long orderId = jdbcTemplate.queryForObject(orderSql, Long.class,
-            userId,
-            userOrderId,
-            deliveryAddress,
-            totalPrice);
+        // Insert into ORDERS in one statement: selecting from USERS verifies the user exists
+        // (no row is inserted otherwise) and the next userOrderId is computed in the same query.
+        // A repeated idempotency key inserts nothing (NULL keys never conflict).
+        String orderSql = """
+            INSERT INTO ORDERS (userID, userOrderId, deliveryAddress, totalPrice, idempotencyKey)
+            SELECT u.userId,
+                   COALESCE((SELECT MAX(o.userOrderId) FROM ORDERS o WHERE o.userId = u.userId), 0) + 1,
+                   ?, ?, ?
+            FROM USERS u
+            WHERE u.userId = ?
+            ON CONFLICT (idempotencyKey) DO NOTHING
+            RETURNING orderID
+        """;
+        List<Long> orderIds = jdbcTemplate.queryForList(orderSql, Long.class,
+                deliveryAddress, totalPrice, idempotencyKey, userId);
+        if (!orderIds.isEmpty()) {
+            return new OrderRow(orderIds.get(0), true);
+        }
+
+        if (idempotencyKey != null) {
+            List<Long> existing = jdbcTemplate.queryForList(
+                    "SELECT orderID FROM ORDERS WHERE idempotencyKey = ? AND userID = ?",
+                    Long.class, idempotencyKey, userId);
+            if (!existing.isEmpty()) {
+                return new OrderRow(existing.get(0), false);
+            }
+            if (!jdbcTemplate.queryForList("SELECT 1 FROM ORDERS WHERE idempotencyKey = ?", Integer.class, idempotencyKey).isEmpty()) {
+                throw new IdempotencyKeyConflictException();
+            }
+        }
+        throw new RuntimeException("User not found with ID: " + userId);
+    }
 
-        // Insert order items
+    private void insertOrderItems(long orderId, List<Map<String, Object>> items, long userId) {
+        // Insert order items as one JDBC batch (rewritten into a multi-row INSERT by the driver)
         String itemsSql = "INSERT INTO ORDER_ITEMS (orderID, productID, quantityKG, pricePerKG) VALUES (?, ?, ?, ?)";
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
 
+        List<Object[]> batchArgs = new ArrayList<>(items.size());
         for (Map<String, Object> item : items) {
             // Keep quantity as double to preserve decimal values
             double quantityDouble = ((Number) item.get("quantity")).doubleValue();
@@ -110,84 +233,286 @@ public class DatabaseService {
                 priceInt = priceObj.intValue();
             }
 
-            jdbcTemplate.update(itemsSql,
+            batchArgs.add(new Object[] {
                 orderId,
                 ((Number) item.get("productId")).longValue(),
                 quantityDouble,
-                priceInt);
+                priceInt});
         }
+        jdbcTemplate.batchUpdate(itemsSql, batchArgs);
 
-        return orderId;
+        resourceVersions.changed(ResourceVersions.table("orders"), ResourceVersions.table("order_items"),
+                ResourceVersions.ALL_ORDERS, ResourceVersions.userOrders(userId));
     }
 
+    /**
+     * Checks out a basket: takes the stock and writes the order in one transaction.
+     *
+     * If any product has insufficient stock or the order cannot be written, nothing is
+     * committed, so a failed checkout never leaks stock.
+     *
+     * The ORDERS row is written first, so a retry with the same idempotency key is detected
+     * before any stock is touched: it returns the original order and changes nothing.
+     *
+     * @param checkoutData   userId, deliveryAddress, totalPrice and items (productId, quantity, pricePerKG)
+     * @param idempotencyKey The client's key for this checkout, or null
+     * @return The ID of the new order, or of the order already placed with this key
+     */
+    @Transactional
+    public Long checkout(Map<String, Object> checkoutData, String idempotencyKey) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> items = (List<Map<String, Object>>) checkoutData.get("items");
+
+        OrderRow order = insertOrder(checkoutData, idempotencyKey);
+        if (!order.created()) {
+            return order.orderId();
+        }
+
+        // Joins this transaction; a shortfall rolls back the order row as well
+        updateInventoryBatch(items);
+        insertOrderItems(order.orderId(), items, ((Number) checkoutData.get("userId")).longValue());
+        return order.orderId();
+    }
+
+    /**
+     * Takes the quantities of a basket from stock, all or nothing.
+     *
+     * The rows are locked in productId order before anything is changed, so two checkouts that
+     * share products always lock them in the same order and can never deadlock each other.
+     * The decrement is then a single UPDATE for the whole basket.
+     *
+     * @param updates Items with productId and quantity (kg); repeated products are summed
+     * @throws InsufficientStockException listing every product that is short
+     */
     @Transactional
     public void updateInventoryBatch(List<Map<String, Object>> updates) {
-        String sql = "UPDATE inventory SET stockkg = stockkg - ? WHERE productid = ? AND stockkg >= ?";
+        // Sorted by product ID: the canonical lock order
+        Map<Long, Double> quantities = new TreeMap<>(quantitiesByProduct(updates));
+
+        if (reservationEngine != null) {
+            // Taken from the in-memory counters, without locking inventory rows
+            reservationEngine.reserve(quantities);
+            // Give the stock back if the surrounding transaction (e.g. the checkout's order) rolls back
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        reservationEngine.release(quantities);
+                    }
+                }
+            });
+            return;
+        }
+
+        Long[] productIds = quantities.keySet().toArray(Long[]::new);
 
-        for (Map<String, Object> update : updates) {
-            // Get quantity as double to preserve decimal values
-            Number quantityObj = (Number) update.get("quantity");
-            double quantityValue = quantityObj.doubleValue();
+        // FOR NO KEY UPDATE rather than FOR UPDATE: it still serializes stock changes, but does
+        // not block the foreign key checks of concurrent ORDER_ITEMS inserts
+        String lockSql = """
+            SELECT productid, stockkg
+            FROM inventory
+            WHERE productid = ANY(?)
+            ORDER BY productid
+            FOR NO KEY UPDATE
+        """;
+        Map<Long, BigDecimal> stock = new HashMap<>();
+        jdbcTemplate.query(lockSql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", productIds)),
+                rs -> {
+                    stock.put(rs.getLong("productid"), rs.getBigDecimal("stockkg"));
+                });
+
+        List<InsufficientStockException.Shortfall> shortfalls = new ArrayList<>();
+        BigDecimal[] amounts = new BigDecimal[productIds.length];
+        for (int i = 0; i < productIds.length; i++) {
+            // Hundredths of a kg, like the stockkg column: summed doubles (0.1 + 0.2) carry noise
+            amounts[i] = BigDecimal.valueOf(quantities.get(productIds[i])).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal available = stock.getOrDefault(productIds[i], BigDecimal.ZERO);
+            if (available == null || available.compareTo(amounts[i]) < 0) {
+                shortfalls.add(new InsufficientStockException.Shortfall(productIds[i],
+                        amounts[i].doubleValue(), available == null ? 0 : available.doubleValue()));
+            }
+        }
+        if (!shortfalls.isEmpty()) {
+            throw new InsufficientStockException(shortfalls);
+        }
+
+        // The rows are already locked, so the order the UPDATE visits them in does not matter
+        String updateSql = """
+            UPDATE inventory i
+            SET stockkg = i.stockkg - u.quantity
+            FROM unnest(?::bigint[], ?::numeric[]) AS u(productid, quantity)
+            WHERE i.productid = u.productid
+        """;
+        jdbcTemplate.update(updateSql, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", productIds));
+            ps.setArray(2, ps.getConnection().createArrayOf("numeric", amounts));
+        });
+
+        inventorySnapshotService.inventoryChanged();
+    }
+
+    /**
+     * Adds stock to several products in one JDBC batch.
+     *
+     * The increment happens in SQL (stockkg = stockkg + ?), so concurrent restocks of the same
+     * product never overwrite each other, and the whole batch commits or rolls back together.
+     */
+    @Transactional
+    public void addStockBatch(List<Map<String, Object>> additions) {
+        String sql = "UPDATE inventory SET stockkg = stockkg + ? WHERE productid = ?";
+
+        List<Object[]> batchArgs = new ArrayList<>(additions.size());
+        for (Map<String, Object> addition : additions) {
+            double quantityValue = ((Number) addition.get("quantity")).doubleValue();
+            if (quantityValue <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for product ID: " + addition.get("productId"));
+            }
+            batchArgs.add(new Object[] {quantityValue, ((Number) addition.get("productId")).longValue()});
+        }
+
+        if (reservationEngine != null) {
+            // Added to the counters; the engine writes the new stock to the table with its next flush
+            reservationEngine.addStock(quantitiesByProduct(additions));
+            return;
+        }
+
+        int[] rowsAffected = jdbcTemplate.batchUpdate(sql, batchArgs);
+        for (int i = 0; i < rowsAffected.length; i++) {
+            if (rowsAffected[i] == 0) {
+                throw new RuntimeException("Product not found with ID: " + additions.get(i).get("productId"));
+            }
+        }
 
-            int rowsAffected = jdbcTemplate.update(sql,
-                quantityValue,
-                update.get("productId"),
-                quantityValue);
+        inventorySnapshotService.inventoryChanged();
+    }
 
-            if (rowsAffected == 0) {
-                throw new RuntimeException("Insufficient stock for product ID: " + update.get("productId"));
+    /**
+     * Sets the price of many products in one JDBC batch.
+     *
+     * All prices are applied in one transaction. Unknown product IDs do not fail the batch;
+     * they are reported per row instead.
+     *
+     * @param prices Product ID to new price per kg
+     * @return One result per product: productId and whether a row was updated
+     */
+    @Transactional
+    public List<Map<String, Object>> updatePrices(Map<Long, Integer> prices) {
+        String sql = "UPDATE inventory SET priceperkg = ? WHERE productid = ?";
+
+        List<Long> productIds = new ArrayList<>(prices.keySet());
+        List<Object[]> batchArgs = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            Integer price = prices.get(productId);
+            if (price == null || price <= 0) {
+                throw new IllegalArgumentException("Price must be positive for product ID: " + productId);
             }
+            batchArgs.add(new Object[] {price, productId});
+        }
+
+        int[] rowsAffected = jdbcTemplate.batchUpdate(sql, batchArgs);
+
+        List<Map<String, Object>> results = new ArrayList<>(productIds.size());
+        boolean anyUpdated = false;
+        for (int i = 0; i < productIds.size(); i++) {
+            boolean updated = rowsAffected[i] != 0;
+            anyUpdated |= updated;
+            results.add(Map.of("productId", productIds.get(i), "updated", updated));
         }
+
+        if (anyUpdated) {
+            inventorySnapshotService.inventoryChanged();
+        }
+        return results;
     }
 
-    public List<Map<String, Object>> getUserOrders(Long userId) {
+    // Keyset pagination: a page is the newest `limit` orders with an ID below `before`.
+    // The page is picked in the CTE first, so only those orders are joined with their items.
+    // The joins are outer joins, so an order without items still fills its slot in the page
+    // (an inner join would drop it and return a short page that looks like the last one).
+    @Transactional(readOnly = true)
+    public List<Order> getUserOrders(Long userId, Long before, int limit) {
         String sql = """
+            WITH page AS (
+                SELECT orderid, userorderid, deliveryaddress, totalprice
+                FROM orders
+                WHERE userid = ? AND orderid < ?
+                ORDER BY orderid DESC
+                LIMIT ?
+            )
             SELECT
                 o.orderid,
                 o.userorderid,
                 o.deliveryaddress,
                 o.totalprice,
-                json_agg(
-                    json_build_object(
-                        'description', i.description,
-                        'quantitykg', oi.quantitykg,
-                        'pricepkg', oi.priceperkg
-                    )
-                ) as items
-            FROM orders o
-            JOIN order_items oi ON o.orderid = oi.orderid
-            JOIN inventory i ON oi.productid = i.productid
-            WHERE o.userid = ?
-            GROUP BY o.orderid, o.userorderid, o.deliveryaddress, o.totalprice
-            ORDER BY o.orderid DESC
+                i.description,
+                oi.serialid,
+                oi.quantitykg,
+                oi.priceperkg
+            FROM page o
+            LEFT JOIN order_items oi ON o.orderid = oi.orderid
+            LEFT JOIN inventory i ON oi.productid = i.productid
+            ORDER BY o.orderid DESC, oi.serialid
         """;
 
-        return jdbcTemplate.query(sql,
-            (rs, rowNum) -> {
-                Map<String, Object> order = new HashMap<>();
-                order.put("orderid", rs.getLong("orderid"));
-                order.put("userorderid", rs.getInt("userorderid"));
-                order.put("deliveryaddress", rs.getString("deliveryaddress"));
-                order.put("totalprice", rs.getDouble("totalprice"));
+        return jdbcTemplate.query(sql, new OrderExtractor(false), userId, keysetStart(before), limit);
+    }
 
-                // Parse the JSON string into a List
-                String itemsJson = rs.getString("items");
-                try {
-                    ObjectMapper mapper = new ObjectMapper();
-                    List<?> items = mapper.readValue(itemsJson, List.class);
-                    order.put("items", items);
-                } catch (Exception e) {
-                    throw new RuntimeException("Error parsing order items JSON", e);
-                }
+    // Method to get a page of all orders (for admin), paginated like getUserOrders
+    @Transactional(readOnly = true)
+    public List<Order> getAllOrders(Long before, int limit) {
+        String sql = """
+            WITH page AS (
+                SELECT orderid, userorderid, userid, deliveryaddress, totalprice
+                FROM orders
+                WHERE orderid < ?
+                ORDER BY orderid DESC
+                LIMIT ?
+            )
+            SELECT
+                o.orderid,
+                o.userorderid,
+                o.userid,
+                u.firstname,
+                u.lastname,
+                o.deliveryaddress,
+                o.totalprice,
+                i.description,
+                oi.serialid,
+                oi.quantitykg,
+                oi.priceperkg
+            FROM page o
+            JOIN users u ON o.userid = u.userid
+            LEFT JOIN order_items oi ON o.orderid = oi.orderid
+            LEFT JOIN inventory i ON oi.productid = i.productid
+            ORDER BY o.orderid DESC, oi.serialid
+        """;
+
+        return jdbcTemplate.query(sql, new OrderExtractor(true), keysetStart(before), limit);
+    }
+
+    // No cursor means the first page, i.e. start above every possible order ID
+    private static long keysetStart(Long before) {
+        return before != null ? before : Long.MAX_VALUE;
+    }
 
-                return order;
-            },
-            userId
-        );
+    // Sums the quantity per product of a list of {productId, quantity} items. Every line must be
+    // positive on its own, so a negative line can never hide inside a positive sum.
+    private static Map<Long, Double> quantitiesByProduct(List<Map<String, Object>> items) {
+        Map<Long, Double> quantities = new LinkedHashMap<>();
+        for (Map<String, Object> item : items) {
+            long productId = ((Number) item.get("productId")).longValue();
+            double quantity = ((Number) item.get("quantity")).doubleValue();
+            if (!(quantity > 0)) {
+                throw new IllegalArgumentException("Quantity must be positive for product ID: " + productId);
+            }
+            quantities.merge(productId, quantity, Double::sum);
+        }
+        return quantities;
     }
 
-    // Method to get all orders (for admin)
-    public List<Map<String, Object>> getAllOrders() {
+    // Streams every order (for admin exports) as a JSON array, in the same shape as getAllOrders
+    public void streamAllOrders(OutputStream out) {
         String sql = """
             SELECT
                 o.orderid,
@@ -197,53 +522,105 @@ public class DatabaseService {
                 u.lastname,
                 o.deliveryaddress,
                 o.totalprice,
-                json_agg(
+                COALESCE(json_agg(
                     json_build_object(
                         'description', i.description,
                         'quantitykg', oi.quantitykg,
                         'pricepkg', oi.priceperkg
-                    )
-                ) as items
+                    ) ORDER BY oi.serialid
+                ) FILTER (WHERE oi.orderid IS NOT NULL), '[]') as items
             FROM orders o
             JOIN users u ON o.userid = u.userid
-            JOIN order_items oi ON o.orderid = oi.orderid
-            JOIN inventory i ON oi.productid = i.productid
+            LEFT JOIN order_items oi ON o.orderid = oi.orderid
+            LEFT JOIN inventory i ON oi.productid = i.productid
             GROUP BY o.orderid, o.userorderid, o.userid, u.firstname, u.lastname, o.deliveryaddress, o.totalprice
             ORDER BY o.orderid DESC
         """;
 
-        return jdbcTemplate.query(sql,
-            (rs, rowNum) -> {
-                Map<String, Object> order = new HashMap<>();
-                order.put("orderid", rs.getLong("orderid"));
-                order.put("userorderid", rs.getInt("userorderid"));
-                order.put("userid", rs.getLong("userid"));
-                order.put("username", rs.getString("firstname") + " " + rs.getString("lastname"));
-                order.put("deliveryaddress", rs.getString("deliveryaddress"));
-                order.put("totalprice", rs.getDouble("totalprice"));
-
-                // Parse the JSON string into a List
-                String itemsJson = rs.getString("items");
+        jsonRowStreamer.stream(out, sql, (rs, rowNum) -> {
+            Map<String, Object> order = new LinkedHashMap<>();
+            order.put("orderid", rs.getLong("orderid"));
+            order.put("userorderid", rs.getInt("userorderid"));
+            order.put("userid", rs.getLong("userid"));
+            order.put("username", rs.getString("firstname") + " " + rs.getString("lastname"));
+            order.put("deliveryaddress", rs.getString("deliveryaddress"));
+            order.put("totalprice", rs.getDouble("totalprice"));
+            // The items are already JSON; pass them through to the output as-is
+            order.put("items", new RawValue(rs.getString("items")));
+            return order;
+        });
+    }
+
+    // Cart methods
+
+    @Transactional(readOnly = true)
+    public Cart getCart(Long userId) {
+        List<String> items = jdbcTemplate.queryForList(
+                "SELECT items FROM carts WHERE userid = ?", String.class, userId);
+        if (items.isEmpty()) {
+            return new Cart(userId, List.of());
+        }
+        try {
+            return new Cart(userId, objectMapper.readValue(items.get(0), CART_ITEMS_TYPE));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Invalid cart stored for user ID: " + userId, e);
+        }
+    }
+
+    /**
+     * Stores many carts in one transaction (the catalog's write-behind flush).
+     *
+     * Carts with items are upserted and empty carts are deleted. A cart of a user that no
+     * longer exists is skipped rather than failing the batch.
+     *
+     * @param carts The carts to store
+     */
+    @Transactional
+    public void saveCarts(List<Cart> carts) {
+        String upsertSql = """
+            INSERT INTO carts (userid, items, updatedat)
+            SELECT userid, ?::jsonb, now() FROM users WHERE userid = ?
+            ON CONFLICT (userid) DO UPDATE SET items = EXCLUDED.items, updatedat = EXCLUDED.updatedat
+        """;
+
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Cart cart : carts) {
+            if (cart.items().isEmpty()) {
+                deletes.add(new Object[] {cart.userId()});
+            } else {
                 try {
-                    ObjectMapper mapper = new ObjectMapper();
-                    List<?> items = mapper.readValue(itemsJson, List.class);
-                    order.put("items", items);
-                } catch (Exception e) {
-                    throw new RuntimeException("Error parsing order items JSON", e);
+                    upserts.add(new Object[] {objectMapper.writeValueAsString(cart.items()), cart.userId()});
+                } catch (JsonProcessingException e) {
+                    throw new RuntimeException("Could not serialize the cart of user ID: " + cart.userId(), e);
                 }
-
-                return order;
             }
-        );
+        }
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(upsertSql, upserts);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM carts WHERE userid = ?", deletes);
+        }
+        if (!carts.isEmpty()) {
+            resourceVersions.changed(ResourceVersions.table("carts"));
+        }
     }
 
     // User management methods
 
-    public List<Map<String, Object>> getAllUsers() {
+    @Transactional(readOnly = true)
+    public List<User> getAllUsers() {
         String sql = "SELECT userid, firstname, lastname, email, phone, type FROM users";
         return jdbcTemplate.query(sql, new UserRowMapper());
     }
 
+    public void streamAllUsers(OutputStream out) {
+        String sql = "SELECT userid, firstname, lastname, email, phone, type FROM users ORDER BY userid";
+        jsonRowStreamer.stream(out, sql, new UserRowMapper());
+    }
+
+    @Transactional(readOnly = true)
     public Map<String, Object> getUserByEmail(String email) {
         System.out.println("DatabaseService: Getting user by email: " + email);
         String sql = "SELECT userid, firstname, lastname, email, phone, type, hashedpassword FROM users WHERE email = ?";
@@ -319,6 +696,7 @@ public class DatabaseService {
                     userType);
 
             System.out.println("DatabaseService: User inserted with ID: " + userId);
+            resourceVersions.changed(ResourceVersions.table("users"), ResourceVersions.USERS);
 
             // Return the created user
             Map<String, Object> newUser = new HashMap<>();
@@ -340,10 +718,9 @@ public class DatabaseService {
 
     @Transactional
     public boolean deleteUser(Long userId) {
-        // First check if user exists
-        String checkSql = "SELECT COUNT(*) FROM users WHERE userid = ?";
-        int count = jdbcTemplate.queryForObject(checkSql, Integer.class, userId);
-        if (count == 0) {
+        // First check if user exists (and remember the email for cache eviction)
+        String email = findUserEmail(userId);
+        if (email == null) {
             return false;
         }
 
@@ -363,15 +740,22 @@ public class DatabaseService {
         // Finally delete the user
         String deleteUserSql = "DELETE FROM users WHERE userid = ?";
         int rowsAffected = jdbcTemplate.update(deleteUserSql, userId);
+        if (rowsAffected > 0) {
+            userChangeNotifier.userChanged(email);
+            resourceVersions.changed(ResourceVersions.table("users"), ResourceVersions.USERS,
+                    ResourceVersions.table("orders"), ResourceVersions.table("order_items"),
+                    // The user's CARTS row goes with it (ON DELETE CASCADE)
+                    ResourceVersions.table("carts"),
+                    ResourceVersions.ALL_ORDERS, ResourceVersions.userOrders(userId));
+        }
         return rowsAffected > 0;
     }
 
     @Transactional
     public boolean resetUserPassword(Long userId, String newPassword) {
-        // Check if user exists
-        String checkSql = "SELECT COUNT(*) FROM users WHERE userid = ?";
-        int count = jdbcTemplate.queryForObject(checkSql, Integer.class, userId);
-        if (count == 0) {
+        // Check if user exists (and remember the email for cache eviction)
+        String email = findUserEmail(userId);
+        if (email == null) {
             return false;
         }
 
@@ -382,21 +766,72 @@ public class DatabaseService {
         // Update the password
         String updateSql = "UPDATE users SET hashedpassword = ? WHERE userid = ?";
         int rowsAffected = jdbcTemplate.update(updateSql, hashedPassword, userId);
+        if (rowsAffected > 0) {
+            userChangeNotifier.userChanged(email);
+            resourceVersions.changed(ResourceVersions.table("users"));
+        }
         return rowsAffected > 0;
     }
 
+    private String findUserEmail(Long userId) {
+        List<String> emails = jdbcTemplate.queryForList("SELECT email FROM users WHERE userid = ?", String.class, userId);
+        return emails.isEmpty() ? null : emails.get(0);
+    }
+
     // User row mapper
-    private static class UserRowMapper implements RowMapper<Map<String, Object>> {
+    private static class UserRowMapper implements RowMapper<User> {
         @Override
-        public Map<String, Object> mapRow(ResultSet rs, int rowNum) throws SQLException {
-            Map<String, Object> user = new HashMap<>();
-            user.put("id", rs.getLong("userid"));
-            user.put("firstName", rs.getString("firstname"));
-            user.put("lastName", rs.getString("lastname"));
-            user.put("email", rs.getString("email"));
-            user.put("phone", rs.getString("phone"));
-            user.put("type", rs.getInt("type"));
-            return user;
+        public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new User(
+                rs.getLong("userid"),
+                rs.getString("firstname"),
+                rs.getString("lastname"),
+                rs.getString("email"),
+                rs.getString("phone"),
+                rs.getInt("type")
+            );
+        }
+    }
+
+    // Folds the flat order/item join (one row per item, ordered by order ID) into orders
+    private static class OrderExtractor implements ResultSetExtractor<List<Order>> {
+        // Whether the rows carry the customer columns (userid, firstname, lastname)
+        private final boolean withCustomer;
+
+        OrderExtractor(boolean withCustomer) {
+            this.withCustomer = withCustomer;
+        }
+
+        @Override
+        public List<Order> extractData(ResultSet rs) throws SQLException {
+            List<Order> orders = new ArrayList<>();
+            Order current = null;
+            while (rs.next()) {
+                long orderId = rs.getLong("orderid");
+                if (current == null || current.orderId() != orderId) {
+                    current = new Order(
+                        orderId,
+                        rs.getInt("userorderid"),
+                        withCustomer ? rs.getLong("userid") : null,
+                        withCustomer ? rs.getString("firstname") + " " + rs.getString("lastname") : null,
+                        rs.getString("deliveryaddress"),
+                        rs.getDouble("totalprice"),
+                        new ArrayList<>()
+                    );
+                    orders.add(current);
+                }
+                // An order without items comes as a single row with NULL item columns
+                rs.getLong("serialid");
+                if (rs.wasNull()) {
+                    continue;
+                }
+                current.items().add(new OrderItem(
+                    rs.getString("description"),
+                    rs.getDouble("quantitykg"),
+                    rs.getInt("priceperkg")
+                ));
+            }
+            return orders;
         }
     }
 }
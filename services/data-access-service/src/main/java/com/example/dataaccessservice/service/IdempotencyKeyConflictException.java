@@ -0,0 +1,14 @@
+package com.example.dataaccessservice.service;
+
+/**
+ * Thrown when an order or checkout carries an idempotency key that another user's order
+ * already holds. Keys are unique across all users, so the request can never succeed as sent.
+ *
+ * The controller answers it with 422 Unprocessable Entity.
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException() {
+        super("Idempotency key was already used by another user");
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.dataaccessservice.service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when a basket cannot be taken from stock. Lists every product that is short, not just
+ * the first one, so the caller can tell the customer everything to change at once.
+ *
+ * The controller answers it with 409 Conflict and the shortfalls in the body.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    /**
+     * One product the basket asks more of than is available.
+     *
+     * @param productId   The product
+     * @param requestedKG What the basket asks for
+     * @param availableKG What is in stock (0 for an unknown product)
+     */
+    public record Shortfall(long productId, double requestedKG, double availableKG) {
+    }
+
+    private final List<Shortfall> shortfalls;
+
+    public InsufficientStockException(List<Shortfall> shortfalls) {
+        super("Insufficient stock for product ID: " + shortfalls.stream()
+                .map(shortfall -> String.valueOf(shortfall.productId()))
+                .collect(Collectors.joining(", ")));
+        this.shortfalls = List.copyOf(shortfalls);
+    }
+
+    public List<Shortfall> getShortfalls() {
+        return shortfalls;
+    }
+}
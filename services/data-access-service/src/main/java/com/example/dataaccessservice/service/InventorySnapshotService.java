@@ -0,0 +1,224 @@
+package com.example.dataaccessservice.service;
+
+/**
+ * Inventory Snapshot Service
+ *
+ * The inventory table is read on every catalog, inventory and price-management page view but
+ * only written when stock or prices change. Instead of running "SELECT * FROM inventory" for
+ * every read, this service keeps an immutable, versioned copy of the table in memory and
+ * serves reads from it.
+ *
+ * Consistency model:
+ * - Every write path that touches the inventory table calls inventoryChanged()
+ * - The snapshot is reloaded after the surrounding transaction commits, so readers never see
+ *   rolled-back data
+ * - The reload is write-through: it runs in afterCommit on the writing thread, so a write's
+ *   request returns only once a snapshot containing it has been swapped in
+ * - Every change takes a generation number; a reload covers every generation requested before it
+ *   started reading. Writers that commit while another reload is running wait for the next one
+ *   and share it, so a burst of checkouts costs a few table reads instead of one per checkout
+ * - Readers wait for a pending reload as well, so no reader sees a snapshot older than a
+ *   committed write
+ * - A new snapshot is built completely and then swapped in with a single reference write, so
+ *   readers always see a whole table at one version
+ *
+ * Each snapshot carries a strong ETag so callers can send If-None-Match and receive
+ * 304 Not Modified when nothing changed.
+ *
+ * Change Feed:
+ * - Services that keep a local copy of the inventory long-poll awaitChange() with the ETag
+ *   they hold; the request is parked until a new snapshot is swapped in (or it times out)
+ * - This lets them refresh exactly when the inventory changed instead of on every page view
+ */
+
+import com.example.contracts.InventoryItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+public class InventorySnapshotService {
+
+    /**
+     * An immutable copy of the inventory table.
+     *
+     * @param version Monotonic version, incremented on every reload
+     * @param etag    Strong ETag identifying this version (quoted, ready for the ETag header)
+     * @param items   Unmodifiable list of the inventory rows
+     */
+    public record Snapshot(long version, String etag, List<InventoryItem> items) {
+    }
+
+    // Distinguishes versions across restarts so a stale ETag from a previous run never matches
+    private final long epoch = System.currentTimeMillis();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Snapshot snapshot;
+
+    // Guarded by reloadLock
+    private long nextVersion = 1;
+
+    /**
+     * Serializes reloads. A ReentrantLock rather than synchronized: the reload runs a query,
+     * and a virtual thread blocked in a monitor would pin its carrier thread
+     */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    /**
+     * Incremented by every committed change
+     */
+    private final AtomicLong requestedGeneration = new AtomicLong();
+
+    /**
+     * The newest generation the current snapshot contains
+     */
+    private volatile long loadedGeneration;
+
+    /**
+     * Parked change-feed requests, completed on the next snapshot swap
+     */
+    private final Set<DeferredResult<Map<String, Object>>> waiters = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Returns the current snapshot, loading it from the database on first use.
+     *
+     * If a committed change is not in the snapshot yet (its reload is running or failed), waits
+     * for a reload that contains it.
+     *
+     * @return The current inventory snapshot
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && loadedGeneration >= requestedGeneration.get()) {
+            return current;
+        }
+        try {
+            return reloadUpTo(requestedGeneration.get());
+        } catch (RuntimeException e) {
+            if (current == null) {
+                throw e;
+            }
+            // The database is unreachable: serve the last snapshot rather than fail the page
+            System.err.println("InventorySnapshotService: Reload failed, serving version "
+                    + current.version() + ": " + e.getMessage());
+            return current;
+        }
+    }
+
+    /**
+     * Marks the inventory as changed. The snapshot is rebuilt once the current transaction
+     * commits, or immediately when called outside a transaction, before this thread goes on.
+     */
+    public void inventoryChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changeCommitted();
+                }
+            });
+        } else {
+            changeCommitted();
+        }
+    }
+
+    private void changeCommitted() {
+        long generation = requestedGeneration.incrementAndGet();
+        try {
+            reloadUpTo(generation);
+        } catch (RuntimeException e) {
+            // The write is committed, so don't fail its request; the next reader retries the reload
+            System.err.println("InventorySnapshotService: Reload after commit failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waits until the inventory differs from the version the caller holds.
+     *
+     * Completes immediately when the current ETag differs from the given one, otherwise when
+     * the next snapshot is swapped in or the timeout expires. In every case the result
+     * describes the current snapshot, so the caller only has to compare ETags.
+     *
+     * @param sinceEtag     The ETag of the caller's copy (null or empty for "no copy")
+     * @param timeoutMillis How long to park the request
+     * @return A DeferredResult completed with the current version and ETag
+     */
+    public DeferredResult<Map<String, Object>> awaitChange(String sinceEtag, long timeoutMillis) {
+        DeferredResult<Map<String, Object>> result = new DeferredResult<>(timeoutMillis);
+        result.onTimeout(() -> result.setResult(describe(getSnapshot())));
+        result.onCompletion(() -> waiters.remove(result));
+
+        // Register before checking, so a swap between the check and the registration is not missed
+        waiters.add(result);
+        Snapshot current = getSnapshot();
+        if (!current.etag().equals(sinceEtag)) {
+            result.setResult(describe(current));
+        }
+        return result;
+    }
+
+    private Map<String, Object> describe(Snapshot snapshot) {
+        return Map.of("version", snapshot.version(), "etag", snapshot.etag());
+    }
+
+    /**
+     * Returns a snapshot that contains every change up to the given generation, reloading only
+     * if no reload that finished while this thread waited for the lock already covers it.
+     */
+    private Snapshot reloadUpTo(long generation) {
+        reloadLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current != null && loadedGeneration >= generation) {
+                return current;
+            }
+            return reload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the inventory table and swaps in a new snapshot. Called with reloadLock held, so a
+     * slower reload that started earlier can never overwrite the result of a later one.
+     */
+    private Snapshot reload() {
+        // Every generation requested so far was committed before this point, so the query sees it
+        long generation = requestedGeneration.get();
+        List<InventoryItem> items = jdbcTemplate.query(
+                "SELECT productid, description, stockkg, priceperkg FROM inventory ORDER BY productid",
+                (rs, rowNum) -> new InventoryItem(
+                        rs.getLong("productid"),
+                        rs.getString("description"),
+                        rs.getDouble("stockkg"),
+                        rs.getInt("priceperkg")));
+
+        long version = nextVersion++;
+        Snapshot loaded = new Snapshot(version, "\"inventory-" + epoch + "-" + version + "\"",
+                List.copyOf(items));
+        snapshot = loaded;
+        loadedGeneration = generation;
+
+        // Wake up every parked change-feed request
+        Map<String, Object> change = describe(loaded);
+        for (DeferredResult<Map<String, Object>> waiter : waiters) {
+            waiter.setResult(change);
+        }
+
+        System.out.println("InventorySnapshotService: Loaded inventory snapshot version " + version
+                + " (" + items.size() + " products)");
+        return loaded;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.dataaccessservice.service;
+
+/**
+ * JSON Row Streamer
+ *
+ * The regular read endpoints load a whole result into a List<Map<String, Object>> before Jackson
+ * serializes it, so memory grows with the table and nothing is sent until the query has
+ * finished. This component writes a query result to the response as a JSON array, one row at
+ * a time, straight from the JDBC cursor.
+ *
+ * How memory stays constant:
+ * - The PostgreSQL driver only uses a server-side cursor when a fetch size is set and
+ *   auto-commit is off, so each query runs in a read-only transaction with a fetch size;
+ *   the driver then holds at most fetchSize rows at once
+ * - Each row is mapped, written through a JsonGenerator and dropped before the next one is read
+ * - Bytes go out whenever the response buffer fills, long before the last row is read
+ */
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+@Component
+public class JsonRowStreamer {
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ObjectMapper objectMapper;
+
+    public JsonRowStreamer(DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           ObjectMapper objectMapper,
+                           @Value("${data.stream.fetch-size:500}") int fetchSize) {
+        // A separate template, so the fetch size does not apply to the regular queries
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Runs a query and writes its rows to the output stream as a JSON array.
+     *
+     * @param out       The response stream (not closed by this method)
+     * @param sql       The query
+     * @param rowMapper Maps the current row to the value written for it
+     * @param args      Query arguments
+     */
+    public void stream(OutputStream out, String sql, RowMapper<?> rowMapper, Object... args) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // The servlet container owns the stream; and if a query fails halfway the array must
+            // stay unterminated, so the caller sees a broken body rather than a short, valid one
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+            int[] rowNum = {0};
+            generator.writeStartArray();
+            readOnlyTransaction.executeWithoutResult(status ->
+                    streamingJdbcTemplate.query(sql, rs -> {
+                        try {
+                            generator.writeObject(rowMapper.mapRow(rs, rowNum[0]++));
+                        } catch (IOException e) {
+                            // Usually the client went away; abort the query instead of reading on
+                            throw new UncheckedIOException(e);
+                        }
+                    }, args));
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
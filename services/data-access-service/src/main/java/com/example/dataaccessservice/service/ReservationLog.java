@@ -0,0 +1,259 @@
+package com.example.dataaccessservice.service;
+
+/**
+ * Stock Reservation Log
+ *
+ * The durable half of the StockReservationEngine. Stock changes granted in memory are flushed to
+ * the inventory table only every few hundred milliseconds, so each one is first appended to this
+ * log and forced to disk; after a crash, the records the database has not seen yet are replayed.
+ *
+ * Layout:
+ * - The log is a directory of segment files, reservations-<first sequence>.log
+ * - Each record is one text line: "<sequence> <productId>:<delta> <productId>:<delta> ...", with
+ *   deltas in hundredths of a kg (negative for reservations)
+ * - A flush rotates to a new segment; closed segments are deleted once the database has
+ *   recorded their last sequence as flushed
+ *
+ * Durability:
+ * - append() returns only after the record is on disk
+ * - Concurrent appends share fsyncs (group commit): a caller that finds its record already
+ *   forced by another thread's fsync returns without forcing again
+ * - A record cut short by a crash has no trailing newline and is ignored on recovery; its
+ *   caller never got an answer, so the change was never granted
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ReservationLog implements Closeable {
+
+    /**
+     * One logged stock change.
+     *
+     * @param sequence Position in the log, increasing by one per record
+     * @param deltas   Product ID to stock change in hundredths of a kg
+     */
+    public record Record(long sequence, Map<Long, Long> deltas) {
+    }
+
+    private static final String SEGMENT_PREFIX = "reservations-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+
+    /**
+     * Serializes fsyncs and segment rotation; always taken before the log's own monitor
+     */
+    private final Object forceLock = new Object();
+
+    // The fields below are guarded by the log's monitor (this)
+
+    private FileChannel segment;
+
+    private Path segmentPath;
+
+    private long lastSequence;
+
+    /**
+     * Records appended since the last rotation (plus, after opening, the recovered ones)
+     */
+    private List<Record> unflushed = new ArrayList<>();
+
+    /**
+     * Closed segments and the last sequence each one holds, oldest first
+     */
+    private final Map<Path, Long> closedSegments = new LinkedHashMap<>();
+
+    // Guarded by forceLock
+    private long forcedSequence;
+
+    /**
+     * Opens the log in a directory, recovering the records written after the given sequence.
+     *
+     * Recovered records are returned by the first rotate(), like freshly appended ones.
+     *
+     * @param directory        Where the segment files live (created if missing)
+     * @param flushedSequence  The last sequence the database has applied
+     */
+    public ReservationLog(Path directory, long flushedSequence) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        lastSequence = flushedSequence;
+        for (Path existing : listSegments()) {
+            long segmentLast = 0;
+            for (Record record : readSegment(existing)) {
+                segmentLast = Math.max(segmentLast, record.sequence());
+                if (record.sequence() > flushedSequence) {
+                    unflushed.add(record);
+                }
+            }
+            if (segmentLast == 0) {
+                // Opened but never written to; its name may be reused below
+                Files.delete(existing);
+                continue;
+            }
+            closedSegments.put(existing, segmentLast);
+            lastSequence = Math.max(lastSequence, segmentLast);
+        }
+        forcedSequence = lastSequence;
+        openSegment(lastSequence + 1);
+    }
+
+    /**
+     * Appends a record and waits until it is on disk.
+     *
+     * @param deltas Product ID to stock change in hundredths of a kg
+     * @return The record's sequence
+     */
+    public long append(Map<Long, Long> deltas) throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = ++lastSequence;
+            StringBuilder line = new StringBuilder().append(sequence);
+            deltas.forEach((productId, delta) -> line.append(' ').append(productId).append(':').append(delta));
+            line.append('\n');
+
+            ByteBuffer bytes = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.US_ASCII));
+            while (bytes.hasRemaining()) {
+                segment.write(bytes);
+            }
+            unflushed.add(new Record(sequence, Map.copyOf(deltas)));
+        }
+        force(sequence);
+        return sequence;
+    }
+
+    /**
+     * Starts a new segment and hands over every record not yet returned by an earlier rotation.
+     *
+     * @return The records, in sequence order (empty if nothing was appended)
+     */
+    public List<Record> rotate() throws IOException {
+        synchronized (forceLock) {
+            synchronized (this) {
+                if (unflushed.isEmpty()) {
+                    return List.of();
+                }
+                segment.force(false);
+                segment.close();
+                closedSegments.put(segmentPath, lastSequence);
+                forcedSequence = lastSequence;
+                openSegment(lastSequence + 1);
+
+                List<Record> records = unflushed;
+                unflushed = new ArrayList<>();
+                return records;
+            }
+        }
+    }
+
+    /**
+     * Deletes closed segments whose records have all been applied to the database.
+     *
+     * @param flushedSequence The last sequence the database has applied
+     */
+    public synchronized void deleteFlushedSegments(long flushedSequence) {
+        Iterator<Map.Entry<Path, Long>> closed = closedSegments.entrySet().iterator();
+        while (closed.hasNext()) {
+            Map.Entry<Path, Long> entry = closed.next();
+            if (entry.getValue() > flushedSequence) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.getKey());
+                closed.remove();
+            } catch (IOException e) {
+                // Harmless: the records are skipped on recovery, and deletion is retried next flush
+                System.err.println("ReservationLog: Could not delete " + entry.getKey() + ": " + e.getMessage());
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (forceLock) {
+            synchronized (this) {
+                segment.force(false);
+                segment.close();
+            }
+        }
+    }
+
+    private void force(long sequence) throws IOException {
+        synchronized (forceLock) {
+            if (forcedSequence >= sequence) {
+                return;
+            }
+            long upTo;
+            FileChannel current;
+            synchronized (this) {
+                upTo = lastSequence;
+                current = segment;
+            }
+            // Covers every record written to the segment so far, not just this caller's
+            current.force(false);
+            forcedSequence = upTo;
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        segmentPath = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(segmentPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero-padded names sort in sequence order
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static List<Record> readSegment(Path file) throws IOException {
+        String content = Files.readString(file, StandardCharsets.US_ASCII);
+        List<Record> records = new ArrayList<>();
+        int start = 0;
+        int end;
+        // Only complete lines; a torn last line has no newline
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            String line = content.substring(start, end);
+            start = end + 1;
+            try {
+                records.add(parse(line));
+            } catch (RuntimeException e) {
+                System.err.println("ReservationLog: Skipping malformed record in " + file + ": " + line);
+            }
+        }
+        return records;
+    }
+
+    private static Record parse(String line) {
+        String[] fields = line.trim().split(" ");
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        for (int i = 1; i < fields.length; i++) {
+            int colon = fields[i].indexOf(':');
+            deltas.put(Long.parseLong(fields[i].substring(0, colon)), Long.parseLong(fields[i].substring(colon + 1)));
+        }
+        return new Record(Long.parseLong(fields[0]), deltas);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.dataaccessservice.service;
+
+/**
+ * Resource Versions
+ *
+ * Keeps a version counter for every readable resource of the Data Access API (a table, the
+ * order history of one user, all orders, the user list). Write methods in DatabaseService
+ * bump the counters of every resource they affect, and the controller turns the current
+ * version into a strong ETag so callers can revalidate with If-None-Match and receive
+ * 304 Not Modified instead of the full body.
+ *
+ * Ordering rules that keep ETags safe:
+ * - Counters are bumped after the surrounding transaction commits, so an ETag never
+ *   advertises data that could still be rolled back
+ * - Readers take the ETag before they query, so a response can carry an older ETag than its
+ *   data (costing one extra download later) but never a newer one
+ */
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class ResourceVersions {
+
+    public static final String ALL_ORDERS = "orders-all";
+
+    public static final String USERS = "users";
+
+    // Distinguishes versions across restarts so a stale ETag from a previous run never matches
+    private final long epoch = System.currentTimeMillis();
+
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public static String table(String tableName) {
+        return "table-" + tableName.toLowerCase();
+    }
+
+    public static String userOrders(Long userId) {
+        return "orders-user-" + userId;
+    }
+
+    /**
+     * Returns the strong ETag (quoted) for the current version of a resource.
+     *
+     * @param resource The resource key
+     * @return The ETag header value
+     */
+    public String etag(String resource) {
+        // Reads never create counters, so unknown resource names cannot grow the map
+        AtomicLong version = versions.get(resource);
+        return "\"" + resource + "-" + epoch + "-" + (version == null ? 0 : version.get()) + "\"";
+    }
+
+    /**
+     * Marks resources as changed once the current transaction commits (or immediately when
+     * called outside a transaction).
+     *
+     * @param resources The keys of the changed resources
+     */
+    public void changed(String... resources) {
+        List<String> keys = List.of(resources);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keys.forEach(key -> version(key).incrementAndGet());
+                }
+            });
+        } else {
+            keys.forEach(key -> version(key).incrementAndGet());
+        }
+    }
+
+    private AtomicLong version(String resource) {
+        return versions.computeIfAbsent(resource, key -> new AtomicLong());
+    }
+}
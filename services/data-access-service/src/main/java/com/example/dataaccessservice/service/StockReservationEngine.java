@@ -0,0 +1,371 @@
+package com.example.dataaccessservice.service;
+
+/**
+ * Stock Reservation Engine
+ *
+ * A checkout used to decrement stock with "UPDATE inventory ... WHERE stockkg >= ?" inside the
+ * checkout transaction. During a sale on one product, every checkout queued on that product's
+ * row lock until the checkout before it had committed. With inventory.reservations.enabled=true,
+ * stock is taken from in-memory counters instead, and the database is brought up to date in
+ * the background.
+ *
+ * How it works:
+ * - Each product's available stock is an AtomicLong (hundredths of a kg, since stockkg is
+ *   DECIMAL(10,2)); a reservation is a compare-and-set loop, so checkouts of the same product
+ *   never wait on a lock, and a basket is granted all-or-nothing
+ * - Every granted change (reservation, release, restock, stock correction) is appended to the
+ *   ReservationLog and forced to disk before the caller gets an answer
+ * - Every flush interval, the changes logged since the last flush are summed per product and
+ *   applied in one transaction, together with the sequence of the last change applied
+ *   (table stock_reservation_flush)
+ *
+ * Crash recovery:
+ * - On startup, logged changes after the flushed sequence are applied to the database first,
+ *   then the counters are loaded from the inventory table
+ * - A checkout whose order insert fails releases its reservation; if the process dies in
+ *   between, the stock stays reserved (never oversold) until corrected by an administrator
+ *
+ * Caveats:
+ * - The counters live in this process, so the engine must only be enabled when a single
+ *   Data Access Service instance writes the inventory
+ * - The inventory table (and the snapshot served to other services) trails the counters by up
+ *   to one flush interval
+ */
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@ConditionalOnProperty(prefix = "inventory.reservations", name = "enabled", havingValue = "true")
+public class StockReservationEngine {
+
+    private static final int UNITS_PER_KG = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final InventorySnapshotService inventorySnapshotService;
+
+    private final ResourceVersions resourceVersions;
+
+    private final Path logDirectory;
+
+    private final Duration flushInterval;
+
+    /**
+     * Product ID to available stock in hundredths of a kg
+     */
+    private final ConcurrentMap<Long, AtomicLong> available = new ConcurrentHashMap<>();
+
+    /**
+     * Records taken from the log but not yet applied (kept for the next attempt if a flush fails);
+     * only touched by the flush thread, and during startup and shutdown
+     */
+    private final List<ReservationLog.Record> pending = new ArrayList<>();
+
+    private ReservationLog log;
+
+    private ScheduledExecutorService flusher;
+
+    public StockReservationEngine(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  InventorySnapshotService inventorySnapshotService,
+                                  ResourceVersions resourceVersions,
+                                  @Value("${inventory.reservations.log-dir:reservations}") String logDirectory,
+                                  @Value("${inventory.reservations.flush-interval:200ms}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inventorySnapshotService = inventorySnapshotService;
+        this.resourceVersions = resourceVersions;
+        this.logDirectory = Path.of(logDirectory);
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Replays unflushed log records, loads the counters and starts the flush thread.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        Long flushedSequence = jdbcTemplate.queryForObject(
+                "SELECT flushedseq FROM stock_reservation_flush WHERE id = 1", Long.class);
+        log = new ReservationLog(logDirectory, flushedSequence);
+
+        // Bring the database up to date before reading stock from it
+        flush();
+        log.deleteFlushedSegments(flushedSequence);
+
+        jdbcTemplate.query("SELECT productid, stockkg FROM inventory", rs -> {
+            available.put(rs.getLong("productid"), new AtomicLong(toUnits(rs.getBigDecimal("stockkg"))));
+        });
+
+        flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stock-reservation-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        System.out.println("StockReservationEngine: Started with " + available.size()
+                + " products, flushing every " + intervalMillis + " ms to the inventory table");
+    }
+
+    /**
+     * Stops the flush thread and applies whatever is left.
+     */
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+        log.close();
+    }
+
+    /**
+     * Takes stock for a basket: either every product has enough and all of it is taken, or
+     * nothing is taken.
+     *
+     * @param quantities Product ID to kg
+     * @throws InsufficientStockException listing every product that has insufficient stock
+     */
+    public void reserve(Map<Long, Double> quantities) {
+        Map<Long, Long> units = toUnits(quantities);
+        // Validate every item first (unknown products throw here), so a bad item takes nothing
+        units.forEach((productId, amount) -> {
+            if (amount <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for product ID: " + productId);
+            }
+            counter(productId);
+        });
+
+        Map<Long, Long> taken = new LinkedHashMap<>();
+        List<InsufficientStockException.Shortfall> shortfalls = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : units.entrySet()) {
+            AtomicLong counter = counter(entry.getKey());
+            if (tryTake(counter, entry.getValue())) {
+                taken.put(entry.getKey(), entry.getValue());
+            } else {
+                // Keep checking the rest, so every short product is reported
+                shortfalls.add(new InsufficientStockException.Shortfall(entry.getKey(),
+                        toKG(entry.getValue()), toKG(counter.get())));
+            }
+        }
+        if (!shortfalls.isEmpty()) {
+            giveBack(taken);
+            throw new InsufficientStockException(shortfalls);
+        }
+
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        taken.forEach((productId, amount) -> deltas.put(productId, -amount));
+        logOrUndo(deltas);
+    }
+
+    /**
+     * Returns reserved stock, e.g. when the order of a checkout could not be written.
+     *
+     * @param quantities Product ID to kg, as passed to reserve()
+     */
+    public void release(Map<Long, Double> quantities) {
+        add(toUnits(quantities));
+    }
+
+    /**
+     * Adds stock to several products (restocking).
+     *
+     * @param quantities Product ID to kg to add
+     * @throws RuntimeException if a product is unknown
+     */
+    public void addStock(Map<Long, Double> quantities) {
+        add(toUnits(quantities));
+    }
+
+    /**
+     * Sets the available stock of a product (an administrator's correction).
+     *
+     * Logged as the difference to the current stock, so reservations that are not flushed yet
+     * are still applied to the database on top of it.
+     *
+     * Called inside a transaction, the new stock is applied only once that transaction commits,
+     * so a correction that is rolled back together with the rest of its update changes nothing.
+     *
+     * @param productId The product
+     * @param stockKG   The new available stock in kg
+     * @throws RuntimeException if the product is unknown (checked right away, not at commit)
+     */
+    public void setStock(long productId, double stockKG) {
+        AtomicLong counter = counter(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        applyStock(productId, counter, stockKG);
+                    } catch (UncheckedIOException e) {
+                        // Too late to fail the update; the counter was restored by logOrUndo
+                        System.err.println("StockReservationEngine: Stock correction of product " + productId
+                                + " was not applied: " + e.getMessage());
+                    }
+                }
+            });
+        } else {
+            applyStock(productId, counter, stockKG);
+        }
+    }
+
+    /**
+     * @return The available stock of a product in memory (ahead of the inventory table by up to
+     *         one flush interval)
+     */
+    public double getAvailableKG(long productId) {
+        return toKG(counter(productId).get());
+    }
+
+    private void applyStock(long productId, AtomicLong counter, double stockKG) {
+        long target = toUnits(stockKG);
+        long previous = counter.getAndSet(target);
+        if (previous != target) {
+            logOrUndo(Map.of(productId, target - previous));
+        }
+    }
+
+    private void add(Map<Long, Long> units) {
+        // Resolve every product first, so an unknown ID fails before anything is added
+        Map<AtomicLong, Long> counters = new LinkedHashMap<>();
+        units.forEach((productId, amount) -> counters.put(counter(productId), amount));
+        counters.forEach(AtomicLong::addAndGet);
+        logOrUndo(units);
+    }
+
+    private static boolean tryTake(AtomicLong counter, long amount) {
+        while (true) {
+            long current = counter.get();
+            if (current < amount) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - amount)) {
+                return true;
+            }
+        }
+    }
+
+    private void giveBack(Map<Long, Long> taken) {
+        taken.forEach((productId, amount) -> available.get(productId).addAndGet(amount));
+    }
+
+    // A change that could not be made durable is not granted
+    private void logOrUndo(Map<Long, Long> deltas) {
+        try {
+            log.append(deltas);
+        } catch (IOException e) {
+            deltas.forEach((productId, delta) -> available.get(productId).addAndGet(-delta));
+            throw new UncheckedIOException("Could not write the stock reservation log", e);
+        }
+    }
+
+    private AtomicLong counter(long productId) {
+        AtomicLong counter = available.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        // Products added to the table after startup are loaded on first use. The query runs
+        // outside the map (not in computeIfAbsent, which would block the map's bin meanwhile);
+        // if two threads load the same product, the first counter stored wins
+        List<BigDecimal> stock = jdbcTemplate.queryForList(
+                "SELECT stockkg FROM inventory WHERE productid = ?", BigDecimal.class, productId);
+        if (stock.isEmpty()) {
+            throw new RuntimeException("Product not found with ID: " + productId);
+        }
+        AtomicLong loaded = new AtomicLong(toUnits(stock.get(0)));
+        AtomicLong existing = available.putIfAbsent(productId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // Pending records are kept and retried on the next run
+            System.err.println("StockReservationEngine: Flush failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the net change per product of every logged record to the inventory table.
+     */
+    private void flush() throws IOException {
+        pending.addAll(log.rotate());
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Sorted by product ID, so concurrent writers always lock inventory rows in the same order
+        Map<Long, Long> net = new TreeMap<>();
+        for (ReservationLog.Record record : pending) {
+            record.deltas().forEach((productId, delta) -> net.merge(productId, delta, Long::sum));
+        }
+        List<Object[]> batchArgs = new ArrayList<>(net.size());
+        net.forEach((productId, delta) -> {
+            if (delta != 0) {
+                batchArgs.add(new Object[] {BigDecimal.valueOf(delta, 2), productId});
+            }
+        });
+        long flushedSequence = pending.get(pending.size() - 1).sequence();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("UPDATE inventory SET stockkg = stockkg + ? WHERE productid = ?", batchArgs);
+            jdbcTemplate.update("UPDATE stock_reservation_flush SET flushedseq = ? WHERE id = 1", flushedSequence);
+            inventorySnapshotService.inventoryChanged();
+            resourceVersions.changed(ResourceVersions.table("stock_reservation_flush"));
+        });
+
+        pending.clear();
+        log.deleteFlushedSegments(flushedSequence);
+    }
+
+    private static Map<Long, Long> toUnits(Map<Long, Double> quantities) {
+        Map<Long, Long> units = new LinkedHashMap<>();
+        quantities.forEach((productId, kg) -> units.merge(productId, toUnits(kg), Long::sum));
+        return units;
+    }
+
+    private static long toUnits(double kg) {
+        return Math.round(kg * UNITS_PER_KG);
+    }
+
+    private static double toKG(long units) {
+        return (double) units / UNITS_PER_KG;
+    }
+
+    private static long toUnits(BigDecimal kg) {
+        return kg == null ? 0 : kg.movePointRight(2).longValue();
+    }
+}
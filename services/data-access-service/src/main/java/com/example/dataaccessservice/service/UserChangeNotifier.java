@@ -0,0 +1,67 @@
+package com.example.dataaccessservice.service;
+
+/**
+ * User Change Notifier
+ *
+ * The Auth Service keeps an in-memory cache of users keyed by email. Whenever this service
+ * deletes a user or changes a password, it pushes an eviction to the Auth Service so the
+ * stale record is dropped immediately instead of living until its TTL expires.
+ *
+ * Notifications are sent after the surrounding transaction commits, so a rolled-back change
+ * never evicts anything, and failures are only logged (the TTL is the fallback).
+ */
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+@Component
+public class UserChangeNotifier {
+
+    private final RestTemplate restTemplate;
+
+    private final String authServiceUrl;
+
+    public UserChangeNotifier(RestTemplateBuilder restTemplateBuilder,
+                              @Value("${auth.service.url:http://auth-service:8086}") String authServiceUrl) {
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(1))
+                .setReadTimeout(Duration.ofSeconds(2))
+                .build();
+        this.authServiceUrl = authServiceUrl;
+    }
+
+    /**
+     * Tells the Auth Service that the user with the given email changed.
+     *
+     * @param email The email of the changed user
+     */
+    public void userChanged(String email) {
+        if (email == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyAuthService(email);
+                }
+            });
+        } else {
+            notifyAuthService(email);
+        }
+    }
+
+    private void notifyAuthService(String email) {
+        try {
+            restTemplate.postForLocation(authServiceUrl + "/auth/internal/users/evict?email={email}", null, email);
+        } catch (Exception e) {
+            System.err.println("UserChangeNotifier: Failed to evict " + email + " from auth-service cache: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+-- Indexes for the order read and write paths. schema.sql only has primary keys and the
+-- unique email, so every order lookup by user and every join from an order to its items
+-- was a sequential scan.
+
+-- getUserOrders (WHERE userid = ? AND orderid < ? ORDER BY orderid DESC LIMIT ?) reads a page
+-- straight off this index; userorderid is included so the next-userOrderId MAX() in
+-- createOrder is answered from the index alone. Also used by deleteUser.
+CREATE INDEX IF NOT EXISTS orders_userid_orderid_idx
+    ON orders (userid, orderid) INCLUDE (userorderid);
+
+-- Joining a page of orders to its items (ORDER BY orderid, serialid), covering the item
+-- columns the order queries read. Also used by deleteUser's item delete.
+CREATE INDEX IF NOT EXISTS order_items_orderid_serialid_idx
+    ON order_items (orderid, serialid) INCLUDE (productid, quantitykg, priceperkg);
+
+-- Lookups of the orders that contain a product (foreign key checks on inventory changes)
+CREATE INDEX IF NOT EXISTS order_items_productid_idx
+    ON order_items (productid);
+
+ANALYZE orders;
+ANALYZE order_items;
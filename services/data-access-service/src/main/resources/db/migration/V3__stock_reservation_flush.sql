@@ -0,0 +1,11 @@
+-- Bookkeeping for the in-memory stock reservation engine (inventory.reservations.enabled):
+-- the sequence of the last reservation log record applied to the inventory table. It is
+-- updated in the same transaction as the stock, so on restart exactly the records after it
+-- are replayed.
+CREATE TABLE IF NOT EXISTS stock_reservation_flush (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    flushedseq BIGINT NOT NULL
+);
+
+INSERT INTO stock_reservation_flush (id, flushedseq) VALUES (1, 0)
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,7 @@
+-- Shopping carts, written behind by the Product Catalog Service's in-memory cart store.
+-- One row per user with a non-empty cart; items is a JSON array of {productId, quantityKG}.
+CREATE TABLE IF NOT EXISTS carts (
+    userid INTEGER PRIMARY KEY REFERENCES users(userid) ON DELETE CASCADE,
+    items JSONB NOT NULL,
+    updatedat TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,7 @@
+-- Idempotency keys for checkout and order creation. A client sends the same key when it
+-- retries an order (double click, timeout), and the order is created only once per key.
+-- The unique constraint is the authority: concurrent retries wait on it and then find the
+-- original order. Orders placed without a key keep NULL, which never conflicts.
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS idempotencykey VARCHAR(100);
+
+ALTER TABLE orders ADD CONSTRAINT orders_idempotencykey_key UNIQUE (idempotencykey);
@@ -0,0 +1,135 @@
+package com.example.dataaccessservice;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs /api/data/checkout against a real database: concurrent retries that share an
+ * Idempotency-Key must produce one order and take the stock once, and a key that belongs to
+ * another user's order must be refused with 422.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CheckoutIdempotencyTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = PostgresTestDatabase.newContainer();
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        // Flyway applies the migrations when the application starts
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    /**
+     * Sample users from schema.sql
+     */
+    private static final long USER_ID = 1001;
+
+    private static final long OTHER_USER_ID = 1002;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long productId;
+
+    @BeforeEach
+    void setUp() {
+        productId = jdbcTemplate.queryForObject("SELECT MIN(productid) FROM inventory", Long.class);
+        jdbcTemplate.update("UPDATE inventory SET stockkg = 100 WHERE productid = ?", productId);
+    }
+
+    @Test
+    void concurrentRetriesWithOneKeyPlaceOneOrderAndTakeTheStockOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        int requests = 16;
+
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseEntity<Map>>> responses = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            responses.add(executor.submit(() -> {
+                start.await();
+                return checkout(USER_ID, key);
+            }));
+        }
+        start.countDown();
+
+        Set<Object> orderIds = new HashSet<>();
+        for (Future<ResponseEntity<Map>> response : responses) {
+            ResponseEntity<Map> result = response.get();
+            assertEquals(HttpStatus.OK, result.getStatusCode());
+            orderIds.add(result.getBody().get("orderId"));
+        }
+        executor.shutdown();
+
+        // Every request got the same order back
+        assertEquals(1, orderIds.size());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM orders WHERE idempotencykey = ?", Integer.class, key));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM order_items oi JOIN orders o ON o.orderid = oi.orderid WHERE o.idempotencykey = ?",
+                Integer.class, key));
+        assertEquals(0, new BigDecimal("97.50").compareTo(stock()));
+    }
+
+    @Test
+    void keyOfAnotherUsersOrderIsRefusedWithoutTouchingTheStock() {
+        String key = UUID.randomUUID().toString();
+        assertEquals(HttpStatus.OK, checkout(USER_ID, key).getStatusCode());
+
+        ResponseEntity<Map> reused = checkout(OTHER_USER_ID, key);
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM orders WHERE idempotencykey = ? AND userid = ?", Integer.class, key, OTHER_USER_ID));
+        assertEquals(0, new BigDecimal("97.50").compareTo(stock()));
+    }
+
+    private ResponseEntity<Map> checkout(long userId, String key) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", key);
+        Map<String, Object> body = Map.of(
+                "userId", userId,
+                "deliveryAddress", "1 Herzl St, Tel Aviv",
+                "totalPrice", 7.5,
+                "items", List.of(Map.of("productId", productId, "quantity", 2.5, "pricePerKG", 3)));
+        return restTemplate.postForEntity("/api/data/checkout", new HttpEntity<>(body, headers), Map.class);
+    }
+
+    private BigDecimal stock() {
+        return jdbcTemplate.queryForObject("SELECT stockkg FROM inventory WHERE productid = ?", BigDecimal.class, productId);
+    }
+}
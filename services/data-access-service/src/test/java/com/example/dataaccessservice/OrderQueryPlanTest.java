@@ -0,0 +1,208 @@
+package com.example.dataaccessservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression test for the V2 order indexes: EXPLAINs the order-page, order-write, user-delete
+ * and stock queries against a seeded dataset (5,000 users, 200,000 orders, 600,000 items,
+ * 2,000 products) and asserts that orders, order_items and inventory are read through their
+ * indexes, never with a sequential scan.
+ *
+ * The statements mirror the ones in DatabaseService; keep them in sync when those change.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class OrderQueryPlanTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = PostgresTestDatabase.newContainer();
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static JdbcTemplate jdbcTemplate;
+
+    /**
+     * A user in the middle of the seeded range, with 40 orders
+     */
+    private static final long USER_ID = 4500;
+
+    @BeforeAll
+    static void seed() {
+        PostgresTestDatabase.migrate(POSTGRES);
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+
+        jdbcTemplate.execute("""
+            INSERT INTO users (userid, firstname, lastname, email, phone, hashedpassword, type)
+            SELECT g, 'First' || g, 'Last' || g, 'user' || g || '@example.com', '050' || g, NULL, 1
+            FROM generate_series(2000, 6999) g
+        """);
+        jdbcTemplate.execute("""
+            INSERT INTO inventory (description, stockkg, priceperkg)
+            SELECT 'Product ' || g, 1000, 1 + g % 50
+            FROM generate_series(1, 2000) g
+        """);
+        jdbcTemplate.execute("""
+            INSERT INTO orders (userid, userorderid, deliveryaddress, totalprice)
+            SELECT 2000 + g % 5000, g / 5000 + 1, 'Street ' || g, 10
+            FROM generate_series(1, 200000) g
+        """);
+        // Product IDs are serial, so 1..2000 all exist (the sample products plus the seeded ones)
+        jdbcTemplate.execute("""
+            INSERT INTO order_items (orderid, productid, quantitykg, priceperkg)
+            SELECT o.orderid, 1 + (o.orderid * 3 + k) % 2000, 1.5, 3
+            FROM orders o CROSS JOIN generate_series(1, 3) k
+        """);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void userOrdersPageReadsTheUserIndexAndTheItemIndex() {
+        List<PlanNode> plan = explain("""
+            WITH page AS (
+                SELECT orderid, userorderid, deliveryaddress, totalprice
+                FROM orders
+                WHERE userid = %d AND orderid < 9223372036854775807
+                ORDER BY orderid DESC
+                LIMIT 20
+            )
+            SELECT o.orderid, o.userorderid, o.deliveryaddress, o.totalprice,
+                   i.description, oi.serialid, oi.quantitykg, oi.priceperkg
+            FROM page o
+            LEFT JOIN order_items oi ON o.orderid = oi.orderid
+            LEFT JOIN inventory i ON oi.productid = i.productid
+            ORDER BY o.orderid DESC, oi.serialid
+        """.formatted(USER_ID));
+
+        assertNoSequentialScan(plan, "orders", "order_items");
+        assertUsesIndex(plan, "orders_userid_orderid_idx");
+        assertUsesIndex(plan, "order_items_orderid_serialid_idx");
+    }
+
+    @Test
+    void allOrdersPageReadsThePrimaryKeyBackwardsAndTheItemIndex() {
+        List<PlanNode> plan = explain("""
+            WITH page AS (
+                SELECT orderid, userorderid, userid, deliveryaddress, totalprice
+                FROM orders
+                WHERE orderid < 150000
+                ORDER BY orderid DESC
+                LIMIT 20
+            )
+            SELECT o.orderid, o.userorderid, o.userid, u.firstname, u.lastname,
+                   o.deliveryaddress, o.totalprice,
+                   i.description, oi.serialid, oi.quantitykg, oi.priceperkg
+            FROM page o
+            JOIN users u ON o.userid = u.userid
+            LEFT JOIN order_items oi ON o.orderid = oi.orderid
+            LEFT JOIN inventory i ON oi.productid = i.productid
+            ORDER BY o.orderid DESC, oi.serialid
+        """);
+
+        assertNoSequentialScan(plan, "orders", "order_items");
+        assertUsesIndex(plan, "orders_pkey");
+        assertUsesIndex(plan, "order_items_orderid_serialid_idx");
+    }
+
+    @Test
+    void orderInsertFindsTheNextUserOrderIdFromTheUserIndex() {
+        // EXPLAIN without ANALYZE does not run the INSERT
+        List<PlanNode> plan = explain("""
+            INSERT INTO ORDERS (userID, userOrderId, deliveryAddress, totalPrice, idempotencyKey)
+            SELECT u.userId,
+                   COALESCE((SELECT MAX(o.userOrderId) FROM ORDERS o WHERE o.userId = u.userId), 0) + 1,
+                   'Street', 10, 'key'
+            FROM USERS u
+            WHERE u.userId = %d
+            ON CONFLICT (idempotencyKey) DO NOTHING
+            RETURNING orderID
+        """.formatted(USER_ID));
+
+        assertNoSequentialScan(plan, "orders", "users");
+        assertUsesIndex(plan, "orders_userid_orderid_idx");
+    }
+
+    @Test
+    void userDeleteFindsTheUsersOrdersAndItemsByIndex() {
+        List<PlanNode> items = explain(
+                "DELETE FROM order_items WHERE orderid IN (SELECT orderid FROM orders WHERE userid = " + USER_ID + ")");
+        assertNoSequentialScan(items, "orders", "order_items");
+        assertUsesIndex(items, "orders_userid_orderid_idx");
+        assertUsesIndex(items, "order_items_orderid_serialid_idx");
+
+        List<PlanNode> orders = explain("DELETE FROM orders WHERE userid = " + USER_ID);
+        assertNoSequentialScan(orders, "orders");
+        assertUsesIndex(orders, "orders_userid_orderid_idx");
+    }
+
+    @Test
+    void stockLockAndDecrementReadInventoryByPrimaryKey() {
+        List<PlanNode> lock = explain("""
+            SELECT productid, stockkg
+            FROM inventory
+            WHERE productid = ANY('{17,250,1999}'::bigint[])
+            ORDER BY productid
+            FOR NO KEY UPDATE
+        """);
+        assertNoSequentialScan(lock, "inventory");
+        assertUsesIndex(lock, "inventory_pkey");
+
+        List<PlanNode> decrement = explain("""
+            UPDATE inventory i
+            SET stockkg = i.stockkg - u.quantity
+            FROM unnest('{17,250,1999}'::bigint[], '{1.5,2.0,0.25}'::numeric[]) AS u(productid, quantity)
+            WHERE i.productid = u.productid
+        """);
+        assertNoSequentialScan(decrement, "inventory");
+        assertUsesIndex(decrement, "inventory_pkey");
+    }
+
+    /**
+     * One node of a query plan: its type and, for scans, the table and index it reads.
+     */
+    private record PlanNode(String nodeType, String relation, String index) {
+    }
+
+    private static List<PlanNode> explain(String sql) {
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+        try {
+            List<PlanNode> nodes = new ArrayList<>();
+            collect(OBJECT_MAPPER.readTree(json).get(0).get("Plan"), nodes);
+            return nodes;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable plan: " + json, e);
+        }
+    }
+
+    private static void collect(JsonNode node, List<PlanNode> nodes) {
+        nodes.add(new PlanNode(node.path("Node Type").asText(),
+                node.path("Relation Name").asText(null), node.path("Index Name").asText(null)));
+        for (JsonNode child : node.path("Plans")) {
+            collect(child, nodes);
+        }
+    }
+
+    private static void assertNoSequentialScan(List<PlanNode> plan, String... tables) {
+        for (String table : tables) {
+            assertTrue(plan.stream().noneMatch(node -> node.nodeType().equals("Seq Scan") && table.equals(node.relation())),
+                    () -> "Sequential scan on " + table + " in " + plan);
+        }
+    }
+
+    private static void assertUsesIndex(List<PlanNode> plan, String index) {
+        assertTrue(plan.stream().anyMatch(node -> index.equals(node.index())),
+                () -> "Index " + index + " not used in " + plan);
+    }
+}
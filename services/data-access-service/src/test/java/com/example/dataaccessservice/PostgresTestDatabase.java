@@ -0,0 +1,43 @@
+package com.example.dataaccessservice;
+
+import org.flywaydb.core.Flyway;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.MountableFile;
+
+import java.nio.file.Path;
+
+/**
+ * A PostgreSQL database set up like the one in docker-compose.yml, for tests that need the real
+ * planner, constraints and locking.
+ *
+ * The container runs schema.sql through the image's entrypoint (version 1, as in production)
+ * and migrate() applies the Flyway migrations on top, with the service's baseline settings.
+ * Tests using it are annotated @Testcontainers(disabledWithoutDocker = true), so they are
+ * skipped where Docker is not available.
+ */
+final class PostgresTestDatabase {
+
+    private PostgresTestDatabase() {
+    }
+
+    static PostgreSQLContainer<?> newContainer() {
+        return new PostgreSQLContainer<>(DockerImageName.parse("postgres:alpine").asCompatibleSubstituteFor("postgres"))
+                .withDatabaseName("mydb")
+                .withUsername("user")
+                .withPassword("password")
+                // The repository root's schema.sql; tests run in the module directory
+                .withCopyFileToContainer(MountableFile.forHostPath(Path.of("../../schema.sql").toAbsolutePath()),
+                        "/docker-entrypoint-initdb.d/schema.sql");
+    }
+
+    static void migrate(PostgreSQLContainer<?> postgres) {
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .baselineDescription("schema.sql")
+                .load()
+                .migrate();
+    }
+}
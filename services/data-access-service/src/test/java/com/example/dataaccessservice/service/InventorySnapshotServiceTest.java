@@ -0,0 +1,178 @@
+package com.example.dataaccessservice.service;
+
+import com.example.contracts.InventoryItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventorySnapshotServiceTest {
+
+    private final InMemoryInventory inventory = new InMemoryInventory();
+
+    private final InventorySnapshotService snapshots = new InventorySnapshotService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(snapshots, "jdbcTemplate", inventory);
+        inventory.stockKG.set(10.0);
+    }
+
+    @Test
+    void changeOutsideATransactionIsVisibleWhenInventoryChangedReturns() {
+        snapshots.getSnapshot();
+        inventory.stockKG.set(7.0);
+
+        snapshots.inventoryChanged();
+
+        assertEquals(7.0, stockOf(snapshots.getSnapshot()));
+    }
+
+    @Test
+    void changeInATransactionIsSwappedInOnCommitByTheWritingThread() {
+        InventorySnapshotService.Snapshot before = snapshots.getSnapshot();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            inventory.stockKG.set(4.0);
+            snapshots.inventoryChanged();
+            // Not committed yet: readers keep the old version
+            assertEquals(before, snapshots.getSnapshot());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        InventorySnapshotService.Snapshot after = snapshots.getSnapshot();
+        assertEquals(4.0, stockOf(after));
+        assertTrue(after.version() > before.version());
+    }
+
+    @Test
+    void rolledBackChangeDoesNotReload() {
+        snapshots.getSnapshot();
+        int queries = inventory.queries.get();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            snapshots.inventoryChanged();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(queries, inventory.queries.get());
+    }
+
+    @Test
+    void concurrentCommitsShareReloadsAndEachSeesItsOwnWrite() throws Exception {
+        snapshots.getSnapshot();
+        int queriesBefore = inventory.queries.get();
+        inventory.delayMillis = 20;
+
+        int writers = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger nextStock = new AtomicInteger();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                // The "commit": every write raises the stock, so a snapshot with a value at least
+                // this high contains this write
+                double written = nextStock.incrementAndGet();
+                inventory.stockKG.accumulateAndGet(written, Math::max);
+                snapshots.inventoryChanged();
+                return stockOf(snapshots.getSnapshot()) >= written;
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+
+        int reloads = inventory.queries.get() - queriesBefore;
+        assertTrue(reloads < writers, "expected shared reloads, got " + reloads + " for " + writers + " writes");
+    }
+
+    @Test
+    void readerRetriesAReloadThatFailedAfterCommit() {
+        snapshots.getSnapshot();
+        inventory.stockKG.set(3.0);
+        inventory.failNext = true;
+
+        // The commit itself does not fail
+        snapshots.inventoryChanged();
+
+        assertEquals(3.0, stockOf(snapshots.getSnapshot()));
+    }
+
+    @Test
+    void readerGetsTheLastSnapshotWhileTheDatabaseIsDown() {
+        InventorySnapshotService.Snapshot before = snapshots.getSnapshot();
+        inventory.failAlways = true;
+
+        snapshots.inventoryChanged();
+
+        assertEquals(before, snapshots.getSnapshot());
+    }
+
+    private static double stockOf(InventorySnapshotService.Snapshot snapshot) {
+        return snapshot.items().get(0).stockKG();
+    }
+
+    /**
+     * Answers the snapshot query with one product whose stock the tests set.
+     */
+    private static class InMemoryInventory extends JdbcTemplate {
+
+        final AtomicReference<Double> stockKG = new AtomicReference<>(0.0);
+
+        final AtomicInteger queries = new AtomicInteger();
+
+        volatile long delayMillis;
+
+        volatile boolean failNext;
+
+        volatile boolean failAlways;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper) {
+            queries.incrementAndGet();
+            if (failAlways || failNext) {
+                failNext = false;
+                throw new DataAccessResourceFailureException("database down");
+            }
+            // Read at the start of the query, like a statement snapshot
+            double stock = stockKG.get();
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return List.of((T) new InventoryItem(1L, "Apples", stock, 5));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.dataaccessservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservationLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversRecordsAfterTheFlushedSequence() throws Exception {
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            log.append(Map.of(1L, -100L));
+            log.append(Map.of(2L, -50L));
+            log.append(Map.of(1L, 25L));
+        }
+
+        try (ReservationLog log = new ReservationLog(directory, 1)) {
+            List<ReservationLog.Record> recovered = log.rotate();
+            assertEquals(List.of(2L, 3L), sequences(recovered));
+            assertEquals(Map.of(2L, -50L), recovered.get(0).deltas());
+            assertEquals(Map.of(1L, 25L), recovered.get(1).deltas());
+        }
+    }
+
+    @Test
+    void ignoresATornLastRecord() throws Exception {
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            log.append(Map.of(1L, -100L));
+            log.append(Map.of(1L, -200L));
+        }
+        // A crash in the middle of an append: the line has no newline
+        Files.writeString(onlySegment(), "3 1:-3", StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            assertEquals(List.of(1L, 2L), sequences(log.rotate()));
+            // The torn record was never granted, so its sequence is handed out again
+            assertEquals(3L, log.append(Map.of(1L, -1L)));
+        }
+    }
+
+    @Test
+    void doesNotReplayRotatedAndFlushedSegments() throws Exception {
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            log.append(Map.of(1L, -100L));
+            log.append(Map.of(1L, -100L));
+            assertEquals(List.of(1L, 2L), sequences(log.rotate()));
+            log.deleteFlushedSegments(2);
+
+            log.append(Map.of(1L, -7L));
+        }
+
+        try (ReservationLog log = new ReservationLog(directory, 2)) {
+            List<ReservationLog.Record> recovered = log.rotate();
+            assertEquals(List.of(3L), sequences(recovered));
+            assertEquals(Map.of(1L, -7L), recovered.get(0).deltas());
+        }
+    }
+
+    @Test
+    void keepsRotatedButUnflushedSegmentsForRecovery() throws Exception {
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            log.append(Map.of(1L, -100L));
+            log.rotate();
+            // The flush failed: nothing is deleted
+            log.append(Map.of(1L, -5L));
+        }
+
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            assertEquals(List.of(1L, 2L), sequences(log.rotate()));
+        }
+    }
+
+    @Test
+    void concurrentAppendsGetDistinctSequencesAndAreAllRecovered() throws Exception {
+        int threads = 8;
+        int appendsPerThread = 200;
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long productId = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < appendsPerThread; i++) {
+                        log.append(Map.of(productId, -1L));
+                        if (i % 50 == 0) {
+                            log.rotate();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+        }
+
+        try (ReservationLog log = new ReservationLog(directory, 0)) {
+            List<ReservationLog.Record> recovered = log.rotate();
+            Set<Long> distinct = new HashSet<>(sequences(recovered));
+            assertEquals(threads * appendsPerThread, recovered.size());
+            assertEquals(threads * appendsPerThread, distinct.size());
+            assertTrue(distinct.contains(1L) && distinct.contains((long) threads * appendsPerThread));
+        }
+    }
+
+    private Path onlySegment() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(file -> Files.isRegularFile(file)).sorted().toList();
+            // The last one is the empty segment opened for the next append
+            return segments.get(0);
+        }
+    }
+
+    private static List<Long> sequences(List<ReservationLog.Record> records) {
+        return records.stream().map(ReservationLog.Record::sequence).toList();
+    }
+}
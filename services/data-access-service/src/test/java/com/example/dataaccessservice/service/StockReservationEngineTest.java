@@ -0,0 +1,309 @@
+package com.example.dataaccessservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StockReservationEngineTest {
+
+    @TempDir
+    Path logDirectory;
+
+    private final InMemoryInventory inventory = new InMemoryInventory();
+
+    private final List<StockReservationEngine> engines = new ArrayList<>();
+
+    @AfterEach
+    void stopEngines() throws Exception {
+        for (StockReservationEngine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        inventory.stock.put(1L, new BigDecimal("10.00"));
+        StockReservationEngine engine = startEngine();
+
+        int threads = 64;
+        AtomicInteger granted = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        runConcurrently(threads, () -> {
+            try {
+                engine.reserve(Map.of(1L, 0.3));
+                granted.incrementAndGet();
+            } catch (InsufficientStockException e) {
+                refused.incrementAndGet();
+            }
+        });
+
+        // 33 * 0.30 = 9.90 fits into 10.00, a 34th does not
+        assertEquals(33, granted.get());
+        assertEquals(threads - 33, refused.get());
+        assertEquals(0.10, engine.getAvailableKG(1L), 1e-9);
+    }
+
+    @Test
+    void concurrentReserveAndReleaseNeverGoesNegativeAndRestoresStock() throws Exception {
+        inventory.stock.put(1L, new BigDecimal("5.00"));
+        StockReservationEngine engine = startEngine();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean wentNegative = new AtomicBoolean();
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                if (engine.getAvailableKG(1L) < 0) {
+                    wentNegative.set(true);
+                }
+            }
+        });
+        watcher.start();
+
+        runConcurrently(16, () -> {
+            for (int i = 0; i < 200; i++) {
+                try {
+                    engine.reserve(Map.of(1L, 1.0));
+                    engine.release(Map.of(1L, 1.0));
+                } catch (InsufficientStockException e) {
+                    // Everything was taken by other threads at this moment
+                }
+            }
+        });
+        running.set(false);
+        watcher.join();
+
+        assertFalse(wentNegative.get());
+        assertEquals(5.0, engine.getAvailableKG(1L), 1e-9);
+    }
+
+    @Test
+    void basketIsAllOrNothingAndReportsEveryShortfall() throws Exception {
+        inventory.stock.put(1L, new BigDecimal("1.00"));
+        inventory.stock.put(2L, new BigDecimal("5.00"));
+        inventory.stock.put(3L, new BigDecimal("0.50"));
+        StockReservationEngine engine = startEngine();
+
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+                () -> engine.reserve(Map.of(1L, 2.0, 2L, 1.0, 3L, 1.0)));
+
+        assertEquals(List.of(1L, 3L), e.getShortfalls().stream()
+                .map(InsufficientStockException.Shortfall::productId).sorted().toList());
+        assertEquals(1.0, engine.getAvailableKG(1L), 1e-9);
+        assertEquals(5.0, engine.getAvailableKG(2L), 1e-9);
+        assertEquals(0.5, engine.getAvailableKG(3L), 1e-9);
+    }
+
+    @Test
+    void unknownProductTakesNothing() throws Exception {
+        inventory.stock.put(1L, new BigDecimal("5.00"));
+        StockReservationEngine engine = startEngine();
+
+        assertThrows(RuntimeException.class, () -> engine.reserve(Map.of(1L, 1.0, 99L, 1.0)));
+        assertEquals(5.0, engine.getAvailableKG(1L), 1e-9);
+    }
+
+    @Test
+    void productsAddedAfterStartupAreLoadedOnFirstUse() throws Exception {
+        StockReservationEngine engine = startEngine();
+        inventory.stock.put(7L, new BigDecimal("2.50"));
+
+        engine.reserve(Map.of(7L, 1.0));
+
+        assertEquals(1.5, engine.getAvailableKG(7L), 1e-9);
+    }
+
+    @Test
+    void flushAppliesTheNetChangePerProduct() throws Exception {
+        inventory.stock.put(1L, new BigDecimal("10.00"));
+        inventory.stock.put(2L, new BigDecimal("10.00"));
+        StockReservationEngine engine = startEngine();
+
+        engine.reserve(Map.of(1L, 3.0, 2L, 1.0));
+        engine.release(Map.of(2L, 1.0));
+        engine.addStock(Map.of(1L, 0.5));
+        engine.stop();
+        engines.remove(engine);
+
+        assertEquals(new BigDecimal("7.50"), inventory.stock.get(1L));
+        assertEquals(new BigDecimal("10.00"), inventory.stock.get(2L));
+        assertEquals(3L, inventory.flushedSequence);
+    }
+
+    @Test
+    void replaysUnflushedReservationsAfterACrash() throws Exception {
+        inventory.stock.put(1L, new BigDecimal("10.00"));
+        StockReservationEngine crashed = newEngine();
+        crashed.start();
+        crashed.reserve(Map.of(1L, 4.0));
+        crashed.reserve(Map.of(1L, 1.0));
+        // No stop(): the process died before the next flush, the table still says 10.00
+        assertEquals(new BigDecimal("10.00"), inventory.stock.get(1L));
+
+        StockReservationEngine restarted = startEngine();
+
+        assertEquals(new BigDecimal("5.00"), inventory.stock.get(1L));
+        assertEquals(5.0, restarted.getAvailableKG(1L), 1e-9);
+    }
+
+    @Test
+    void setStockInATransactionIsAppliedOnlyOnCommit() throws Exception {
+        inventory.stock.put(1L, new BigDecimal("10.00"));
+        StockReservationEngine engine = startEngine();
+
+        // Rolled back: the correction is dropped
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.setStock(1L, 3.0);
+            assertEquals(10.0, engine.getAvailableKG(1L), 1e-9);
+        } finally {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(10.0, engine.getAvailableKG(1L), 1e-9);
+
+        // Committed: applied
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.setStock(1L, 3.0);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(3.0, engine.getAvailableKG(1L), 1e-9);
+    }
+
+    private StockReservationEngine startEngine() throws Exception {
+        StockReservationEngine engine = newEngine();
+        engine.start();
+        engines.add(engine);
+        return engine;
+    }
+
+    private StockReservationEngine newEngine() {
+        // Flushes only when a test stops the engine
+        return new StockReservationEngine(inventory, new NoOpTransactionManager(),
+                mock(InventorySnapshotService.class), new ResourceVersions(),
+                logDirectory.toString(), Duration.ofHours(1));
+    }
+
+    private static void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Answers the engine's few statements from a map, so the tests need no database.
+     */
+    private static class InMemoryInventory extends JdbcTemplate {
+
+        final Map<Long, BigDecimal> stock = new ConcurrentHashMap<>();
+
+        volatile long flushedSequence;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            // SELECT flushedseq FROM stock_reservation_flush
+            return (T) Long.valueOf(flushedSequence);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler) {
+            // SELECT productid, stockkg FROM inventory
+            stock.forEach((productId, stockKG) -> {
+                try {
+                    ResultSet row = mock(ResultSet.class);
+                    when(row.getLong("productid")).thenReturn(productId);
+                    when(row.getBigDecimal("stockkg")).thenReturn(stockKG);
+                    handler.processRow(row);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            // SELECT stockkg FROM inventory WHERE productid = ?
+            BigDecimal stockKG = stock.get(((Number) args[0]).longValue());
+            return stockKG == null ? List.of() : List.of((T) stockKG);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            // UPDATE inventory SET stockkg = stockkg + ? WHERE productid = ?
+            for (Object[] args : batchArgs) {
+                stock.merge((Long) args[1], (BigDecimal) args[0], BigDecimal::add);
+            }
+            return new int[batchArgs.size()];
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            // UPDATE stock_reservation_flush SET flushedseq = ?
+            flushedSequence = (Long) args[0];
+            return 1;
+        }
+    }
+
+    private static class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
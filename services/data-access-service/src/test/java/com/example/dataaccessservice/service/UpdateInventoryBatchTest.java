@@ -0,0 +1,189 @@
+package com.example.dataaccessservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the statements updateInventoryBatch sends without the reservation engine: which rows
+ * it locks and which arrays it binds to the unnest UPDATE.
+ */
+class UpdateInventoryBatchTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final InventorySnapshotService inventorySnapshotService = mock(InventorySnapshotService.class);
+
+    private final DatabaseService databaseService = new DatabaseService();
+
+    /**
+     * Product ID to stock as the inventory table has it
+     */
+    private final Map<Long, BigDecimal> stock = new HashMap<>();
+
+    /**
+     * The arrays bound by each statement, in the order they were created
+     */
+    private final List<Object[]> lockArrays = new ArrayList<>();
+
+    private final List<Object[]> updateArrays = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        ReflectionTestUtils.setField(databaseService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(databaseService, "inventorySnapshotService", inventorySnapshotService);
+
+        // SELECT ... FOR NO KEY UPDATE: answer with the rows of the requested products
+        doAnswer(invocation -> {
+            bind(invocation.getArgument(1), lockArrays);
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (Object productId : lockArrays.get(0)) {
+                BigDecimal stockKG = stock.get((Long) productId);
+                if (stockKG != null) {
+                    ResultSet row = mock(ResultSet.class);
+                    when(row.getLong("productid")).thenReturn((Long) productId);
+                    when(row.getBigDecimal("stockkg")).thenReturn(stockKG);
+                    handler.processRow(row);
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("FOR NO KEY UPDATE"), any(PreparedStatementSetter.class),
+                any(RowCallbackHandler.class));
+
+        // UPDATE ... FROM unnest(...)
+        doAnswer(invocation -> {
+            bind(invocation.getArgument(1), updateArrays);
+            return updateArrays.get(0).length;
+        }).when(jdbcTemplate).update(contains("unnest"), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    void oneLineBasket() {
+        stock.put(5L, new BigDecimal("10.00"));
+
+        databaseService.updateInventoryBatch(List.of(Map.of("productId", 5, "quantity", 1.5)));
+
+        assertArrayEquals(new Object[] {5L}, lockArrays.get(0));
+        assertArrayEquals(new Object[] {5L}, updateArrays.get(0));
+        assertDecimals(new String[] {"1.50"}, updateArrays.get(1));
+        verify(inventorySnapshotService).inventoryChanged();
+    }
+
+    @Test
+    void duplicateProductsAreSummedIntoOneRowInProductOrder() {
+        stock.put(1L, new BigDecimal("10.00"));
+        stock.put(2L, new BigDecimal("10.00"));
+
+        databaseService.updateInventoryBatch(List.of(
+                Map.of("productId", 2, "quantity", 0.5),
+                Map.of("productId", 1, "quantity", 1.0),
+                Map.of("productId", 2, "quantity", 0.25),
+                Map.of("productId", 1, "quantity", 2)));
+
+        // One element per product, sorted (the lock order), so unnest never updates a row twice
+        assertArrayEquals(new Object[] {1L, 2L}, lockArrays.get(0));
+        assertArrayEquals(new Object[] {1L, 2L}, updateArrays.get(0));
+        assertDecimals(new String[] {"3.00", "0.75"}, updateArrays.get(1));
+    }
+
+    @Test
+    void summedDuplicatesAreRoundedToTheColumnPrecision() {
+        // 0.1 + 0.2 is 0.30000000000000004 as a double
+        stock.put(1L, new BigDecimal("0.30"));
+
+        databaseService.updateInventoryBatch(List.of(
+                Map.of("productId", 1, "quantity", 0.1),
+                Map.of("productId", 1, "quantity", 0.2)));
+
+        assertDecimals(new String[] {"0.30"}, updateArrays.get(1));
+    }
+
+    @Test
+    void duplicatesThatTogetherExceedTheStockAreRejected() {
+        stock.put(1L, new BigDecimal("2.50"));
+        stock.put(2L, new BigDecimal("1.00"));
+
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+                () -> databaseService.updateInventoryBatch(List.of(
+                        Map.of("productId", 1, "quantity", 1.0),
+                        Map.of("productId", 2, "quantity", 1.0),
+                        Map.of("productId", 1, "quantity", 2.0),
+                        Map.of("productId", 99, "quantity", 1.0))));
+
+        assertEquals(List.of(new InsufficientStockException.Shortfall(1L, 3.0, 2.5),
+                new InsufficientStockException.Shortfall(99L, 1.0, 0.0)), e.getShortfalls());
+        verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+        verify(inventorySnapshotService, never()).inventoryChanged();
+    }
+
+    @Test
+    void nonPositiveLineIsRejectedEvenWhenTheProductSumIsPositive() {
+        assertThrows(IllegalArgumentException.class, () -> databaseService.updateInventoryBatch(List.of(
+                Map.of("productId", 1, "quantity", 2.0),
+                Map.of("productId", 1, "quantity", -1.0))));
+
+        assertTrue(lockArrays.isEmpty());
+        verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    void nonPositiveLineNeverReachesTheReservationEngine() {
+        StockReservationEngine reservationEngine = mock(StockReservationEngine.class);
+        ReflectionTestUtils.setField(databaseService, "reservationEngine", reservationEngine);
+
+        assertThrows(IllegalArgumentException.class, () -> databaseService.updateInventoryBatch(List.of(
+                Map.of("productId", 1, "quantity", 5.0),
+                Map.of("productId", 1, "quantity", -4.0))));
+
+        verify(reservationEngine, never()).reserve(any());
+    }
+
+    /**
+     * Runs a statement's setter against a mocked connection and records the arrays it creates.
+     */
+    private static void bind(PreparedStatementSetter setter, List<Object[]> arrays) throws SQLException {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        when(ps.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            arrays.add(invocation.getArgument(1));
+            return mock(Array.class);
+        });
+        setter.setValues(ps);
+    }
+
+    private static void assertDecimals(String[] expected, Object[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(0, new BigDecimal(expected[i]).compareTo((BigDecimal) actual[i]),
+                    "element " + i + ": expected " + expected[i] + " but was " + actual[i]);
+        }
+    }
+}
@@ -22,14 +22,19 @@ package com.example.inventoryservice.controller;
  *               handling HTTP requests and returning views.
  */
 
+import com.example.common.auth.UserInfoClient;
+import com.example.common.web.PageTimer;
+import com.example.contracts.InventoryItem;
 import com.example.inventoryservice.service.InventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Controller
 public class InventoryController {
@@ -48,32 +53,30 @@ public class InventoryController {
     private InventoryService inventoryService;
 
     /**
-     * WebClient for communicating with the Auth Service (via Nginx).
+     * Client for resolving the current user from the session cookie.
      *
-     * This client is used to:
-     * - Retrieve current user information
-     * - Verify authentication status
-     * - Get user details for personalization
+     * This client:
+     * - Serves repeat page views of a session from the shared user-info cache
+     * - Falls back to the Auth Service (via Nginx) on a cache miss
+     *
+     * @Autowired - Injects the UserInfoClient bean provided by the common module
      */
-    private final WebClient authClient;
+    @Autowired
+    private UserInfoClient userInfoClient;
 
     /**
-     * Constructor that initializes the WebClient instance.
+     * Records how long each page waits for its data (metric "page.fetch").
      *
-     * The WebClient is configured to communicate with:
-     * - Nginx: As a gateway to the Auth Service
+     * @Autowired - Injects the PageTimer bean provided by the common module
      */
-    public InventoryController() {
-        // Create WebClient for Auth Service (via Nginx)
-        this.authClient = WebClient.create("http://nginx:80");
-    }
+    @Autowired
+    private PageTimer pageTimer;
 
     /**
      * Displays the main inventory page.
      *
      * This endpoint:
-     * - Retrieves all inventory items from the Data Access Service
-     * - Gets user information for personalization (if authenticated)
+     * - Retrieves inventory items and user information (if authenticated) concurrently
      * - Renders the inventory view with current stock levels
      *
      * Features:
@@ -90,27 +93,8 @@ public class InventoryController {
     public String home(
             @CookieValue(name = "JSESSIONID", required = false) String sessionId,
             Model model) {
-        // Get the current user info from the auth service for personalization
-        if (sessionId != null && !sessionId.isEmpty()) {
-            try {
-                // Request user information from Auth Service
-                Map<String, Object> userInfo = authClient.get()
-                        .uri("/auth/user")
-                        .cookie("JSESSIONID", sessionId)
-                        .retrieve()
-                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                        .block();
-
-                // Add user info to model for personalization
-                model.addAttribute("userInfo", userInfo);
-            } catch (Exception e) {
-                // Continue without user info if authentication fails
-                // This should not happen in normal operation since Nginx enforces authentication
-            }
-        }
-
-        // Retrieve inventory items and add to model
-        model.addAttribute("inventoryItems", inventoryService.getInventoryItems());
+        // Load user info and inventory items concurrently and add them to the model
+        addPageData("inventory", sessionId, model);
 
         // Return the inventory view template
         return "inventory";
@@ -120,8 +104,7 @@ public class InventoryController {
      * Displays the farmers page for adding produce to inventory.
      *
      * This endpoint:
-     * - Retrieves all inventory items from the Data Access Service
-     * - Gets user information for personalization (if authenticated)
+     * - Retrieves inventory items and user information (if authenticated) concurrently
      * - Renders the farmers view with form for adding produce
      *
      * Features:
@@ -138,27 +121,8 @@ public class InventoryController {
     public String farmerPage(
             @CookieValue(name = "JSESSIONID", required = false) String sessionId,
             Model model) {
-        // Get the current user info from the auth service for personalization
-        if (sessionId != null && !sessionId.isEmpty()) {
-            try {
-                // Request user information from Auth Service
-                Map<String, Object> userInfo = authClient.get()
-                        .uri("/auth/user")
-                        .cookie("JSESSIONID", sessionId)
-                        .retrieve()
-                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                        .block();
-
-                // Add user info to model for personalization
-                model.addAttribute("userInfo", userInfo);
-            } catch (Exception e) {
-                // Continue without user info if authentication fails
-                // This should not happen in normal operation since Nginx enforces authentication
-            }
-        }
-
-        // Retrieve inventory items and add to model
-        model.addAttribute("inventoryItems", inventoryService.getInventoryItems());
+        // Load user info and inventory items concurrently and add them to the model
+        addPageData("farmers", sessionId, model);
 
         // Return the farmers view template
         return "farmers";
@@ -199,13 +163,8 @@ public class InventoryController {
         // Get the current user info from the auth service for personalization
         if (sessionId != null && !sessionId.isEmpty()) {
             try {
-                // Request user information from Auth Service
-                Map<String, Object> userInfo = authClient.get()
-                        .uri("/auth/user")
-                        .cookie("JSESSIONID", sessionId)
-                        .retrieve()
-                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                        .block();
+                // Request user information (cached per session, Auth Service on a miss)
+                Map<String, Object> userInfo = userInfoClient.getUserInfo(sessionId);
 
                 // Add user info to model for personalization
                 model.addAttribute("userInfo", userInfo);
@@ -240,4 +199,34 @@ public class InventoryController {
     }
 
     // Price management has been moved to the admin service
+
+    /**
+     * Loads the user info (if authenticated) and the inventory items concurrently and adds them
+     * to the model, so the page waits for the slower of the two instead of both in sequence.
+     *
+     * @param page - The page name, used to tag the "page.fetch" timing
+     * @param sessionId - The JSESSIONID cookie for authentication (optional)
+     * @param model - The Spring MVC model for passing data to the view
+     */
+    private void addPageData(String page, String sessionId, Model model) {
+        // Request user information (token, then per-session cache, Auth Service on a miss).
+        // Started here on the request thread, because the token is read from the current request.
+        Mono<Optional<Map<String, Object>>> userInfo = Mono.just(Optional.empty());
+        if (sessionId != null && !sessionId.isEmpty()) {
+            userInfo = userInfoClient.getUserInfoAsync(sessionId)
+                    .map(Optional::of)
+                    // Continue without user info if authentication fails
+                    // This should not happen in normal operation since Nginx enforces authentication
+                    .onErrorReturn(Optional.empty());
+        }
+
+        Tuple2<Optional<Map<String, Object>>, List<InventoryItem>> pageData =
+                pageTimer.time(page, Mono.zip(userInfo, inventoryService.getInventoryItemsAsync())::block);
+
+        // Add user info to model for personalization
+        pageData.getT1().ifPresent(info -> model.addAttribute("userInfo", info));
+
+        // Add inventory items to model
+        model.addAttribute("inventoryItems", pageData.getT2());
+    }
 }
@@ -26,10 +26,13 @@ package com.example.inventoryservice.service;
  * - The controller handles HTTP concerns and view rendering
  */
 
-import com.example.inventoryservice.model.InventoryItem;
+import com.example.common.inventory.InventoryCache;
+import com.example.contracts.InventoryItem;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.core.ParameterizedTypeReference;
+import reactor.core.publisher.Mono;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -51,96 +54,87 @@ public class InventoryService {
      */
     private final WebClient webClient;
 
+    /**
+     * Local copy of the inventory, kept fresh by the Data Access change feed.
+     *
+     * Page renders read from it instead of fetching the inventory on every request.
+     */
+    private final InventoryCache inventoryCache;
+
     /**
      * Constructor that initializes the WebClient instance.
      *
      * The WebClient is configured to communicate with:
      * - Data Access Service: For database operations
+     *
+     * @param dataAccessWebClient Shared client for the Data Access Service
+     * @param inventoryCache Shared local inventory cache
      */
-    public InventoryService() {
-        // Create WebClient for Data Access Service
-        this.webClient = WebClient.create("http://data-access-service:8085");
+    public InventoryService(@Qualifier("dataAccessWebClient") WebClient dataAccessWebClient, InventoryCache inventoryCache) {
+        // Shared, pooled client for the Data Access Service (see common HttpClientAutoConfiguration)
+        this.webClient = dataAccessWebClient;
+        this.inventoryCache = inventoryCache;
     }
 
     /**
      * Retrieves all inventory items from the database.
      *
      * This method:
-     * - Fetches inventory data from the Data Access Service
-     * - Transforms the raw data into InventoryItem domain objects
+     * - Reads inventory data from the local inventory cache
      * - Returns a list of inventory items for display and processing
      *
      * @return List of InventoryItem objects representing the current inventory
      */
     public List<InventoryItem> getInventoryItems() {
-        // Retrieve inventory data from Data Access Service
-        return webClient.get()
-                .uri("/api/data/tables/inventory")
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-                .block()
-                // Transform raw data into domain objects
-                .stream()
-                .map(this::mapToInventoryItem)
-                .collect(Collectors.toList());
+        // Retrieve inventory data from the local copy of the Data Access Service inventory
+        return inventoryCache.getItems();
+    }
+
+    /**
+     * Non-blocking variant of getInventoryItems(), so a page can load inventory and user info
+     * concurrently.
+     *
+     * @return A Mono emitting the InventoryItem objects representing the current inventory
+     */
+    public Mono<List<InventoryItem>> getInventoryItemsAsync() {
+        return inventoryCache.getItemsAsync();
     }
 
     /**
      * Adds a quantity of produce to a specific product's inventory.
      *
      * This method:
-     * 1. Retrieves the current stock level for the product
-     * 2. Calculates the new stock level by adding the quantity
-     * 3. Updates the inventory through the Data Access Service
+     * - Sends the quantity as an increment to the Data Access Service
+     * - The new stock level is computed in SQL, so concurrent additions are never lost
      *
      * @param productId The ID of the product to update
      * @param quantityToAdd The quantity (in kg) to add to the current stock
      * @throws RuntimeException if the product is not found
      */
     public void addProduce(Long productId, Double quantityToAdd) {
-        // Get current stock
-        InventoryItem currentItem = getInventoryItems().stream()
-                .filter(item -> item.getProductId().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        addStock(Map.of(productId, quantityToAdd));
+    }
 
-        // Calculate new stock
-        double newStock = currentItem.getStockKG() + quantityToAdd;
+    /**
+     * Sends stock increments to the Data Access Service in one batch request.
+     *
+     * @param quantities Map of product ID to the quantity (in kg) to add
+     */
+    private void addStock(Map<Long, Double> quantities) {
+        List<Map<String, Object>> additions = quantities.entrySet().stream()
+                .map(entry -> Map.<String, Object>of(
+                    "productId", entry.getKey(),
+                    "quantity", entry.getValue()
+                ))
+                .collect(Collectors.toList());
 
-        // Update stock through data-access-service
         webClient.post()
-                .uri("/api/data/tables/inventory/update")
-                .bodyValue(Map.of(
-                    "productId", productId,
-                    "stockKG", newStock
-                ))
+                .uri("/api/data/inventory/add-stock-batch")
+                .bodyValue(additions)
                 .retrieve()
                 .bodyToMono(Void.class)
                 .block();
-    }
-
-    /**
-     * Maps a raw data map from the database to an InventoryItem domain object.
-     *
-     * This method:
-     * - Extracts values from the raw data map
-     * - Converts them to the appropriate types
-     * - Populates an InventoryItem object with the values
-     *
-     * @param map The raw data map from the database
-     * @return An InventoryItem object populated with the data
-     */
-    private InventoryItem mapToInventoryItem(Map<String, Object> map) {
-        InventoryItem item = new InventoryItem();
-        // Extract and convert product ID
-        item.setProductId(((Number) map.get("productid")).longValue());
-        // Extract product description
-        item.setDescription((String) map.get("description"));
-        // Extract and convert stock quantity
-        item.setStockKG(((Number) map.get("stockkg")).doubleValue());
-        // Extract and convert price per kg
-        item.setPricePerKG(((Number) map.get("priceperkg")).intValue());
-        return item;
+        inventoryCache.invalidate();
     }
 
     /**
@@ -148,9 +142,7 @@ public class InventoryService {
      *
      * This method:
      * 1. Parses and validates the input quantities from the form submission
-     * 2. Retrieves current inventory levels
-     * 3. Calculates new stock levels for each product
-     * 4. Updates the inventory through the Data Access Service
+     * 2. Sends all quantities as increments to the Data Access Service in one request
      *
      * Form Parameter Format:
      * - Keys are in the format "quantities[productId]"
@@ -183,35 +175,8 @@ public class InventoryService {
             throw new RuntimeException("No valid quantities provided");
         }
 
-        // Get current inventory items for efficient lookup
-        Map<Long, InventoryItem> currentItems = getInventoryItems().stream()
-            .collect(Collectors.toMap(InventoryItem::getProductId, item -> item));
-
-        // Process each product update
-        for (Map.Entry<Long, Double> entry : validQuantities.entrySet()) {
-            Long productId = entry.getKey();
-            Double quantityToAdd = entry.getValue();
-
-            // Verify the product exists
-            InventoryItem currentItem = currentItems.get(productId);
-            if (currentItem == null) {
-                throw new RuntimeException("Product not found with ID: " + productId);
-            }
-
-            // Calculate new stock level
-            double newStock = currentItem.getStockKG() + quantityToAdd;
-
-            // Update inventory through data-access-service
-            webClient.post()
-                    .uri("/api/data/tables/inventory/update")
-                    .bodyValue(Map.of(
-                        "productId", productId,
-                        "stockKG", newStock
-                    ))
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
-        }
+        // Add all quantities in a single request (one SQL batch on the Data Access side)
+        addStock(validQuantities);
     }
 
     /**
@@ -219,14 +184,15 @@ public class InventoryService {
      *
      * This method:
      * 1. Parses and validates the input prices from the form submission
-     * 2. Updates each product's price through the Data Access Service
+     * 2. Sends all prices to the Data Access Service in one batch request
+     * 3. Reports any product IDs that were not found
      *
      * Form Parameter Format:
      * - Keys are in the format "prices[productId]"
      * - Values are the new prices as strings
      *
      * @param prices Map of form parameters containing product IDs and prices
-     * @throws RuntimeException if no valid prices are provided
+     * @throws RuntimeException if no valid prices are provided or a product is not found
      */
     public void updatePrices(Map<String, String> prices) {
         // Parse and validate the input prices
@@ -252,18 +218,22 @@ public class InventoryService {
             throw new RuntimeException("No valid prices provided");
         }
 
-        // Update each product's price
-        for (Map.Entry<Long, Integer> entry : validPrices.entrySet()) {
-            // Update price through data-access-service
-            webClient.post()
-                    .uri("/api/data/tables/inventory/update")
-                    .bodyValue(Map.of(
-                        "productId", entry.getKey(),
-                        "pricePerKG", entry.getValue()
-                    ))
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
+        // Update all prices in a single request (one SQL batch on the Data Access side)
+        List<Map<String, Object>> results = webClient.post()
+                .uri("/api/data/inventory/update-prices")
+                .bodyValue(validPrices)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .block();
+        inventoryCache.invalidate();
+
+        // Report products that do not exist (the other prices are already applied)
+        List<Object> missing = results == null ? List.of() : results.stream()
+                .filter(result -> !Boolean.TRUE.equals(result.get("updated")))
+                .map(result -> result.get("productId"))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            throw new RuntimeException("Product not found with ID: " + missing);
         }
     }
 }
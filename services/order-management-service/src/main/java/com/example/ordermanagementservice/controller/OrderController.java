@@ -28,14 +28,18 @@ package com.example.ordermanagementservice.controller;
  */
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.CookieValue;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.example.ordermanagementservice.service.OrderService;
 import com.example.ordermanagementservice.service.AuthService;
+import com.example.common.web.PageTimer;
+import com.example.contracts.Order;
 
 import java.util.List;
 import java.util.Map;
@@ -73,6 +77,20 @@ public class OrderController {
     @Autowired
     private AuthService authService;
 
+    /**
+     * How many orders the orders page shows at a time
+     */
+    @Value("${orders.page-size:20}")
+    private int pageSize;
+
+    /**
+     * Records how long each page waits for its data (metric "page.fetch").
+     *
+     * @Autowired - Injects the PageTimer bean provided by the common module
+     */
+    @Autowired
+    private PageTimer pageTimer;
+
     /**
      * Redirects the root URL to the orders page.
      *
@@ -93,8 +111,14 @@ public class OrderController {
      * This endpoint:
      * - Requires authentication (throws 401 if not authenticated)
      * - Shows different views for regular users and administrators
-     * - Retrieves order data from the Data Access Service
-     * - Renders the orders view with order listings
+     * - Retrieves one page of order data from the Data Access Service
+     * - Renders the orders view with order listings and a link to the next page
+     *
+     * Pagination:
+     * - Orders are listed newest first, pageSize at a time
+     * - The "before" cursor is the last order ID of the previous page
+     * - A full page links to the next one; the link after the last full page may lead to an
+     *   empty page when the number of orders is an exact multiple of the page size
      *
      * Role-Based Access:
      * - Regular users (type=1): See only their own orders
@@ -107,6 +131,7 @@ public class OrderController {
      *
      * @GetMapping - Maps HTTP GET requests to "/orders"
      * @param sessionId - The JSESSIONID cookie for authentication
+     * @param before - Cursor: only orders with a smaller ID are shown (optional, newest first if absent)
      * @param model - The Spring MVC model for passing data to the view
      * @return The name of the view template to render ("orders")
      * @throws ResponseStatusException with 401 Unauthorized if not authenticated
@@ -114,6 +139,7 @@ public class OrderController {
     @GetMapping("/orders")
     public String showOrders(
             @CookieValue(name = "JSESSIONID", required = false) String sessionId,
+            @RequestParam(required = false) Long before,
             Model model) {
 
         // Get the current user information from the Auth Service
@@ -123,12 +149,20 @@ public class OrderController {
         Long userId = authService.getUserId(userInfo);
         boolean isAdmin = authService.isAdmin(userInfo);
 
-        // Retrieve orders based on user role (admin sees all, regular user sees own orders)
-        List<Map<String, Object>> orders = orderService.getOrdersByUserRole(userId, isAdmin);
+        // Retrieve orders based on user role (admin sees all, regular user sees own orders).
+        // This call needs the user ID and role above, so unlike the catalog and inventory
+        // pages the two fetches cannot run concurrently; only the orders fetch is timed.
+        List<Order> orders = pageTimer.time("orders",
+                () -> orderService.getOrdersByUserRole(userId, isAdmin, before, pageSize));
+
+        // A full page may be followed by older orders; its last order ID is the next cursor
+        Long nextCursor = orders.size() == pageSize ? orders.get(orders.size() - 1).orderId() : null;
 
         // Add data to the model for rendering in the view
         model.addAttribute("orders", orders);     // Order data for display
         model.addAttribute("userInfo", userInfo); // User information for personalization
+        model.addAttribute("nextCursor", nextCursor); // Cursor for the "Older orders" link (null on the last page)
+        model.addAttribute("firstPage", before == null); // Later pages link back to the newest orders
 
         // Return the orders view template
         return "orders";
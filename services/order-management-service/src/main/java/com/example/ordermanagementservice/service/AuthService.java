@@ -24,10 +24,9 @@ package com.example.ordermanagementservice.service;
  * - The controller handles HTTP concerns and view rendering
  */
 
-import org.springframework.core.ParameterizedTypeReference;
+import com.example.common.auth.UserInfoClient;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Map;
@@ -41,24 +40,22 @@ import java.util.Map;
 @Service
 public class AuthService {
     /**
-     * WebClient for communicating with the Auth Service.
+     * Client for resolving the current user from the session cookie.
      * 
      * This client is used to:
-     * - Retrieve user information
+     * - Retrieve user information, served from the shared per-session cache when possible
      * - Validate authentication status
      * - Determine user roles and permissions
      */
-    private final WebClient authClient;
+    private final UserInfoClient userInfoClient;
 
     /**
-     * Constructor that initializes the WebClient instance.
+     * Constructor that receives the shared UserInfoClient.
      * 
-     * The WebClient is configured to communicate with:
-     * - Nginx: As a gateway to the Auth Service
+     * @param userInfoClient Client backed by the user-info cache (Auth Service via Nginx on a miss)
      */
-    public AuthService() {
-        // Create WebClient for Auth Service (via Nginx)
-        this.authClient = WebClient.create("http://nginx:80");
+    public AuthService(UserInfoClient userInfoClient) {
+        this.userInfoClient = userInfoClient;
     }
 
     /**
@@ -80,15 +77,10 @@ public class AuthService {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated");
         }
 
-        // Retrieve user information from the Auth Service
+        // Retrieve user information (cached per session, Auth Service on a miss)
         Map<String, Object> userInfo;
         try {
-            userInfo = authClient.get()
-                    .uri("/auth/user")
-                    .cookie("JSESSIONID", sessionId)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                    .block();
+            userInfo = userInfoClient.getUserInfo(sessionId);
         } catch (Exception e) {
             // Authentication failed - throw 401 Unauthorized
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated: " + e.getMessage());
@@ -24,12 +24,14 @@ package com.example.ordermanagementservice.service;
  * - The controller handles HTTP concerns and view rendering
  */
 
+import com.example.common.http.RevalidatingClient;
+import com.example.contracts.Order;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * Service for order management functionality.
@@ -39,6 +41,9 @@ import java.util.Map;
  */
 @Service
 public class OrderService {
+
+    private static final ParameterizedTypeReference<List<Order>> ORDERS_TYPE = new ParameterizedTypeReference<>() {};
+
     /**
      * WebClient for communicating with the Data Access Service.
      * 
@@ -49,19 +54,30 @@ public class OrderService {
      */
     private final WebClient dataAccessClient;
 
+    /**
+     * Conditional-GET wrapper around the Data Access client.
+     *
+     * Remembers the last response of each read endpoint and revalidates it with its ETag,
+     * so unchanged data costs a header-only 304 exchange.
+     */
+    private final RevalidatingClient dataAccessReads;
+
     /**
      * Constructor that initializes the WebClient instance.
      * 
      * The WebClient is configured to communicate with:
      * - Data Access Service: For database operations
+     *
+     * @param dataAccessWebClient Shared client for the Data Access Service
      */
-    public OrderService() {
-        // Create WebClient for Data Access Service
-        this.dataAccessClient = WebClient.create("http://data-access-service:8085");
+    public OrderService(@Qualifier("dataAccessWebClient") WebClient dataAccessWebClient) {
+        // Shared, pooled client for the Data Access Service (see common HttpClientAutoConfiguration)
+        this.dataAccessClient = dataAccessWebClient;
+        this.dataAccessReads = new RevalidatingClient(this.dataAccessClient, 1000);
     }
 
     /**
-     * Retrieves orders based on user role.
+     * Retrieves one page of orders based on user role, newest first.
      * 
      * This method:
      * - Implements role-based access control for orders
@@ -72,17 +88,23 @@ public class OrderService {
      * - Admin users (type=2) can see all orders in the system
      * - Regular users (type=1) can only see their own orders
      * 
+     * Pagination:
+     * - Pass the last order ID of a page as "before" to get the next (older) page
+     * - A page shorter than pageSize is the last one
+     * 
      * @param userId The ID of the current user
      * @param isAdmin Whether the current user is an admin
+     * @param before Only orders with a smaller ID are returned (null for the newest orders)
+     * @param pageSize The maximum number of orders to return
      * @return List of orders based on user role
      */
-    public List<Map<String, Object>> getOrdersByUserRole(Long userId, boolean isAdmin) {
+    public List<Order> getOrdersByUserRole(Long userId, boolean isAdmin, Long before, int pageSize) {
         if (isAdmin) {
             // Admin view: Retrieve all orders in the system
-            return getAllOrders();
+            return getAllOrders(before, pageSize);
         } else {
             // Regular user view: Retrieve only the user's own orders
-            return getUserOrders(userId);
+            return getUserOrders(userId, before, pageSize);
         }
     }
 
@@ -90,34 +112,38 @@ public class OrderService {
      * Retrieves all orders in the system.
      * 
      * This method:
-     * - Fetches all orders from the Data Access Service
+     * - Fetches a page of all orders from the Data Access Service
      * - Used for admin users who can see all orders
      * 
-     * @return List of all orders in the system
+     * @param before Only orders with a smaller ID are returned (null for the newest orders)
+     * @param pageSize The maximum number of orders to return
+     * @return List of orders in the system
      */
-    private List<Map<String, Object>> getAllOrders() {
-        return dataAccessClient.get()
-                .uri("/api/data/orders/all")
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-                .block();
+    private List<Order> getAllOrders(Long before, int pageSize) {
+        if (before == null) {
+            return dataAccessReads.get("/api/data/orders/all?limit={limit}", ORDERS_TYPE, pageSize);
+        }
+        return dataAccessReads.get("/api/data/orders/all?before={before}&limit={limit}",
+                ORDERS_TYPE, before, pageSize);
     }
 
     /**
      * Retrieves orders for a specific user.
      * 
      * This method:
-     * - Fetches orders for a specific user from the Data Access Service
+     * - Fetches a page of orders for a specific user from the Data Access Service
      * - Used for regular users who can only see their own orders
      * 
      * @param userId The ID of the user whose orders to retrieve
+     * @param before Only orders with a smaller ID are returned (null for the newest orders)
+     * @param pageSize The maximum number of orders to return
      * @return List of orders for the specified user
      */
-    private List<Map<String, Object>> getUserOrders(Long userId) {
-        return dataAccessClient.get()
-                .uri("/api/data/orders/user/" + userId)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-                .block();
+    private List<Order> getUserOrders(Long userId, Long before, int pageSize) {
+        if (before == null) {
+            return dataAccessReads.get("/api/data/orders/user/{userId}?limit={limit}", ORDERS_TYPE, userId, pageSize);
+        }
+        return dataAccessReads.get("/api/data/orders/user/{userId}?before={before}&limit={limit}",
+                ORDERS_TYPE, userId, before, pageSize);
     }
 }
@@ -5,6 +5,7 @@ package com.example.productcatalogservice.controller;
  *
  * This controller handles the product catalog functionality, including:
  * - Displaying the product catalog
+ * - Managing the server-side shopping cart
  * - Managing the checkout process
  * - Rendering the home page
  *
@@ -31,14 +32,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.example.common.auth.UserInfoClient;
+import com.example.common.web.PageTimer;
+import com.example.contracts.InventoryItem;
+import com.example.productcatalogservice.model.PricedCart;
 import com.example.productcatalogservice.service.ProductService;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for product catalog and checkout functionality.
@@ -62,25 +71,24 @@ public class ProductCatalogController {
     private ProductService productService;
 
     /**
-     * WebClient for communicating with the Auth Service (via Nginx).
+     * Client for resolving the current user from the session cookie.
+     *
+     * This client:
+     * - Serves repeat page views of a session from the shared user-info cache
+     * - Falls back to the Auth Service (via Nginx) on a cache miss
      *
-     * This client is used to:
-     * - Retrieve current user information
-     * - Verify authentication status
-     * - Get user details for personalization
+     * @Autowired - Injects the UserInfoClient bean provided by the common module
      */
-    private final WebClient authClient;
+    @Autowired
+    private UserInfoClient userInfoClient;
 
     /**
-     * Constructor that initializes the WebClient instance.
+     * Records how long each page waits for its data (metric "page.fetch").
      *
-     * The WebClient is configured to communicate with:
-     * - Nginx: As a gateway to the Auth Service
+     * @Autowired - Injects the PageTimer bean provided by the common module
      */
-    public ProductCatalogController() {
-        // Create WebClient for Auth Service (via Nginx)
-        this.authClient = WebClient.create("http://nginx:80");
-    }
+    @Autowired
+    private PageTimer pageTimer;
 
     @GetMapping("/")
     public String showRoot(
@@ -94,12 +102,7 @@ public class ProductCatalogController {
         // Get the current user info from the auth service
         Map<String, Object> userInfo;
         try {
-            userInfo = authClient.get()
-                    .uri("/auth/user")
-                    .cookie("JSESSIONID", sessionId)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                    .block();
+            userInfo = userInfoClient.getUserInfo(sessionId);
         } catch (Exception e) {
             return "redirect:/login";
         }
@@ -121,12 +124,7 @@ public class ProductCatalogController {
         // Get the current user info from the auth service
         Map<String, Object> userInfo;
         try {
-            userInfo = authClient.get()
-                    .uri("/auth/user")
-                    .cookie("JSESSIONID", sessionId)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                    .block();
+            userInfo = userInfoClient.getUserInfo(sessionId);
         } catch (Exception e) {
             return "redirect:/login";
         }
@@ -145,8 +143,8 @@ public class ProductCatalogController {
      * Displays the product catalog page.
      *
      * This endpoint:
-     * - Retrieves product data from the Data Access Service
-     * - Gets user information for personalization (if authenticated)
+     * - Retrieves product data and user information (if authenticated) concurrently,
+     *   so the page waits for the slower of the two instead of both in sequence
      * - Renders the catalog view with product listings
      *
      * Features:
@@ -165,30 +163,26 @@ public class ProductCatalogController {
             @CookieValue(name = "JSESSIONID", required = false) String sessionId,
             Model model) {
 
-        // Get the current user info from the auth service for personalization
+        // Request user information (token, then per-session cache, Auth Service on a miss).
+        // Started here on the request thread, because the token is read from the current request.
+        Mono<Optional<Map<String, Object>>> userInfo = Mono.just(Optional.empty());
         if (sessionId != null && !sessionId.isEmpty()) {
-            try {
-                // Request user information from Auth Service
-                Map<String, Object> userInfo = authClient.get()
-                        .uri("/auth/user")
-                        .cookie("JSESSIONID", sessionId)
-                        .retrieve()
-                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                        .block();
-
-                // Add user info to model for personalization
-                model.addAttribute("userInfo", userInfo);
-            } catch (Exception e) {
-                // Continue without user info if authentication fails
-                // This should not happen in normal operation since Nginx enforces authentication
-            }
+            userInfo = userInfoClient.getUserInfoAsync(sessionId)
+                    .map(Optional::of)
+                    // Continue without user info if authentication fails
+                    // This should not happen in normal operation since Nginx enforces authentication
+                    .onErrorReturn(Optional.empty());
         }
 
-        // Retrieve product data using the ProductService
-        List<Map<String, Object>> products = productService.getProducts();
+        // Load user info and products concurrently and wait for both
+        Tuple2<Optional<Map<String, Object>>, List<InventoryItem>> pageData =
+                pageTimer.time("catalog", Mono.zip(userInfo, productService.getProductsAsync())::block);
+
+        // Add user info to model for personalization
+        pageData.getT1().ifPresent(info -> model.addAttribute("userInfo", info));
 
         // Add products to model for display in the view
-        model.addAttribute("products", products);
+        model.addAttribute("products", pageData.getT2());
 
         // Return the catalog view template
         return "catalog";
@@ -199,9 +193,10 @@ public class ProductCatalogController {
      *
      * This endpoint:
      * 1. Receives checkout data from the client
-     * 2. Updates inventory quantities
-     * 3. Creates a new order
-     * 4. Returns the order confirmation
+     * 2. Prices the basket on the server (client prices and totals are ignored)
+     * 3. Updates inventory quantities
+     * 4. Creates a new order
+     * 5. Returns the order confirmation
      *
      * Transaction Flow:
      * 1. Update inventory quantities (reduce stock)
@@ -209,29 +204,204 @@ public class ProductCatalogController {
      * 3. Return order confirmation with order ID
      *
      * Error Handling:
-     * - Returns 400 Bad Request with error message if any step fails
+     * - Returns 409 Conflict with the Data Access Service's shortfalls (productId, requestedKG,
+     *   availableKG for every short product) when stock is insufficient
+     * - Returns 422 Unprocessable Entity when the Idempotency-Key belongs to another user's order
+     * - Passes on any other 4xx of the Data Access Service; its 5xx become 502 Bad Gateway
+     * - Returns 400 Bad Request with error message if any other step fails
      * - Client can display appropriate error messages
      *
      * @PostMapping - Maps HTTP POST requests to "/checkout"
      * @ResponseBody - Indicates that the return value should be written to the response body
-     * @param checkoutData - JSON data containing order details (items, user, address, etc.)
-     * @return ResponseEntity with order confirmation or error message
+     * @RequestHeader - Binds the optional Idempotency-Key header; a retry with the same key
+     *                  gets the first checkout's confirmation instead of a second order
+     * @param sessionId - The JSESSIONID cookie identifying the user who places the order
+     * @param checkoutData - JSON data containing order details (items, address, etc.)
+     * @param idempotencyKey - The client's key for this checkout (optional)
+     * @return ResponseEntity with order confirmation or error message, or 401 Unauthorized
+     *         if the user cannot be resolved
      */
     @PostMapping("/checkout")
     @ResponseBody
-    public ResponseEntity<?> processCheckout(@RequestBody Map<String, Object> checkoutData) {
+    public ResponseEntity<?> processCheckout(
+            @CookieValue(name = "JSESSIONID", required = false) String sessionId,
+            @RequestBody Map<String, Object> checkoutData,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        // The order belongs to the session's user; a userId in the body is ignored
+        Long userId = currentUserId(sessionId);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
         try {
             // Delegate checkout processing to the ProductService
-            Map<String, Object> result = productService.processCheckout(checkoutData);
+            Map<String, Object> result = productService.processCheckout(userId, checkoutData, idempotencyKey);
 
             // Return order confirmation
             return ResponseEntity.ok(result);
+        } catch (WebClientResponseException e) {
+            return dataAccessError(e);
         } catch (Exception e) {
             // Return error response if any step fails
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Prices the basket for the checkout page's order summary.
+     *
+     * The page shows these server-computed prices and totals rather than the ones it kept in
+     * localStorage; checkout prices the basket the same way again.
+     *
+     * @PostMapping - Maps HTTP POST requests to "/checkout/price"
+     * @ResponseBody - Indicates that the return value should be written to the response body
+     * @param items - Basket items with productId and quantity (kg)
+     * @return The priced lines, total and any validation errors
+     */
+    @PostMapping("/checkout/price")
+    @ResponseBody
+    public PricedCart priceBasket(@RequestBody List<Map<String, Object>> items) {
+        return productService.priceBasket(items);
+    }
+
+    /**
+     * Returns the current user's server-side cart, priced at the current inventory prices.
+     *
+     * @GetMapping - Maps HTTP GET requests to "/cart"
+     * @ResponseBody - Indicates that the return value should be written to the response body
+     * @param sessionId - The JSESSIONID cookie identifying the user (the cart's owner)
+     * @return The priced cart, or 401 Unauthorized if the user cannot be resolved
+     */
+    @GetMapping("/cart")
+    @ResponseBody
+    public ResponseEntity<?> getCart(@CookieValue(name = "JSESSIONID", required = false) String sessionId) {
+        Long userId = currentUserId(sessionId);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(productService.getCart(userId));
+    }
+
+    /**
+     * Adds a product to the current user's cart (the quantity is added to what is already there).
+     *
+     * @PostMapping - Maps HTTP POST requests to "/cart/items"
+     * @ResponseBody - Indicates that the return value should be written to the response body
+     * @param sessionId - The JSESSIONID cookie identifying the user
+     * @param item - JSON with productId and quantity (kg)
+     * @return The priced cart after the change, 400 for an unknown product or invalid quantity
+     */
+    @PostMapping("/cart/items")
+    @ResponseBody
+    public ResponseEntity<?> addToCart(
+            @CookieValue(name = "JSESSIONID", required = false) String sessionId,
+            @RequestBody Map<String, Object> item) {
+        Long userId = currentUserId(sessionId);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!(item.get("productId") instanceof Number productId) || !(item.get("quantity") instanceof Number quantity)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "productId and quantity are required"));
+        }
+        try {
+            return ResponseEntity.ok(productService.addToCart(userId, productId.longValue(), quantity.doubleValue()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Removes a product from the current user's cart.
+     *
+     * @DeleteMapping - Maps HTTP DELETE requests to "/cart/items/{productId}"
+     * @ResponseBody - Indicates that the return value should be written to the response body
+     * @param sessionId - The JSESSIONID cookie identifying the user
+     * @param productId - The product to remove
+     * @return The priced cart after the change
+     */
+    @DeleteMapping("/cart/items/{productId}")
+    @ResponseBody
+    public ResponseEntity<?> removeFromCart(
+            @CookieValue(name = "JSESSIONID", required = false) String sessionId,
+            @PathVariable Long productId) {
+        Long userId = currentUserId(sessionId);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(productService.removeFromCart(userId, productId));
+    }
+
+    /**
+     * Places an order for the current user's server-side cart.
+     *
+     * Only the delivery address comes from the client; items and prices come from the server.
+     * Errors are reported like POST /checkout (409 with shortfalls, 422 for a reused key,
+     * 400 otherwise).
+     *
+     * @PostMapping - Maps HTTP POST requests to "/cart/checkout"
+     * @ResponseBody - Indicates that the return value should be written to the response body
+     * @param sessionId - The JSESSIONID cookie identifying the user
+     * @RequestHeader - Binds the optional Idempotency-Key header (see POST /checkout)
+     * @param checkoutData - JSON with deliveryAddress
+     * @param idempotencyKey - The client's key for this checkout (optional)
+     * @return ResponseEntity with order confirmation or error message
+     */
+    @PostMapping("/cart/checkout")
+    @ResponseBody
+    public ResponseEntity<?> checkoutCart(
+            @CookieValue(name = "JSESSIONID", required = false) String sessionId,
+            @RequestBody Map<String, Object> checkoutData,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        Long userId = currentUserId(sessionId);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            return ResponseEntity.ok(productService.checkoutCart(userId, (String) checkoutData.get("deliveryAddress"), idempotencyKey));
+        } catch (WebClientResponseException e) {
+            return dataAccessError(e);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Answers a checkout that the Data Access Service refused, keeping its status, so the client
+     * can tell a stock shortfall (409) or a reused idempotency key (422) from a bad request.
+     *
+     * @return The Data Access Service's 4xx status and body, or 502 Bad Gateway for its 5xx
+     */
+    private static ResponseEntity<?> dataAccessError(WebClientResponseException e) {
+        if (e.getStatusCode().is5xxServerError()) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                    .body(Map.of("error", "Checkout process failed: " + e.getStatusText()));
+        }
+        Map<String, Object> body = null;
+        try {
+            body = e.getResponseBodyAs(new ParameterizedTypeReference<Map<String, Object>>() {});
+        } catch (RuntimeException decodingFailed) {
+            // Not a JSON object; fall back to the status text
+        }
+        return ResponseEntity.status(e.getStatusCode())
+                .body(body != null ? body : Map.of("error", e.getStatusText()));
+    }
+
+    /**
+     * Resolves the user ID of the session (the ID of the user's cart).
+     *
+     * @return The user ID, or null if there is no session or it cannot be resolved
+     */
+    private Long currentUserId(String sessionId) {
+        if (sessionId == null || sessionId.isEmpty()) {
+            return null;
+        }
+        try {
+            Object id = userInfoClient.getUserInfo(sessionId).get("id");
+            return id instanceof Number number ? number.longValue() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     @GetMapping("/checkout")
     public String showCheckout(
             @CookieValue(name = "JSESSIONID", required = false) String sessionId,
@@ -240,12 +410,7 @@ public class ProductCatalogController {
         // Get the current user info from the auth service
         if (sessionId != null && !sessionId.isEmpty()) {
             try {
-                Map<String, Object> userInfo = authClient.get()
-                        .uri("/auth/user")
-                        .cookie("JSESSIONID", sessionId)
-                        .retrieve()
-                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                        .block();
+                Map<String, Object> userInfo = userInfoClient.getUserInfo(sessionId);
                 model.addAttribute("userInfo", userInfo);
             } catch (Exception e) {
                 // Continue without user info
@@ -0,0 +1,33 @@
+package com.example.productcatalogservice.model;
+
+import java.util.List;
+
+/**
+ * A basket priced by the PricingEngine from the current inventory prices.
+ *
+ * Prices per kg are whole currency units and quantities have two decimals (like the stockkg
+ * column), so line totals and the total are exact to the cent.
+ *
+ * @param lines      One priced line per basket item that could be priced
+ * @param totalPrice Sum of all line totals
+ * @param errors     Why items could not be priced (unknown product, invalid quantity); empty
+ *                   when the basket is valid
+ */
+public record PricedCart(List<Line> lines, double totalPrice, List<String> errors) {
+
+    /**
+     * One priced basket item.
+     *
+     * @param productId   The product
+     * @param description The product description
+     * @param quantityKG  The quantity, rounded to two decimals
+     * @param pricePerKG  The current price per kg
+     * @param lineTotal   quantityKG * pricePerKG
+     */
+    public record Line(long productId, String description, double quantityKG, int pricePerKG, double lineTotal) {
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+}
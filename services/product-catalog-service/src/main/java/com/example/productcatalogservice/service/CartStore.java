@@ -0,0 +1,344 @@
+package com.example.productcatalogservice.service;
+
+/**
+ * Cart Store
+ *
+ * Shopping carts used to live only in the browser, so every checkout shipped the whole basket
+ * and a reload of the catalog page lost it. This store keeps each user's cart on the server,
+ * in memory, and persists it to the CARTS table through the Data Access Service.
+ *
+ * How it works:
+ * - Carts are held in a ConcurrentHashMap keyed by user ID; a cart that is not in memory is
+ *   loaded from the Data Access Service on first use
+ * - Add and remove change one line at a time and only mark the cart dirty (no database call)
+ * - Write-behind: every flush interval, all dirty carts are sent to the Data Access Service in
+ *   one batch; a failed batch stays dirty and is retried on the next run
+ * - Carts idle for longer than the idle timeout are written (if dirty) and dropped from memory
+ *
+ * Consistency:
+ * - Each cart is guarded by its own lock; an evicted cart is marked as such, so a request that
+ *   raced with the eviction retries against a freshly loaded copy instead of losing its change
+ * - Only the flush thread writes carts, so the writes of one user can never overtake each
+ *   other; a write that raced with a newer change leaves the cart dirty for the next run
+ * - Every change bumps the cart's version; checkout clears the cart only if it still has the
+ *   version that was ordered, and asks the flush thread to write it right away
+ * - No HTTP call is made while a cart's lock is held (the locks are ReentrantLocks, which
+ *   unlike synchronized do not pin a virtual thread's carrier while blocked)
+ * - Changes made less than one flush interval before a crash are lost (the cart, not an order)
+ */
+
+import com.example.contracts.Cart;
+import com.example.contracts.CartItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+@Service
+public class CartStore {
+
+    /**
+     * A cart's current items and the version they belong to.
+     *
+     * @param version Incremented on every change
+     * @param items   The cart lines
+     */
+    public record Contents(long version, List<CartItem> items) {
+    }
+
+    /**
+     * One user's cart in memory. All other fields are guarded by lock.
+     */
+    private static final class Entry {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        final long userId;
+
+        /**
+         * Product ID to quantity in kg, in the order products were first added
+         */
+        final Map<Long, Double> quantities = new LinkedHashMap<>();
+
+        long version;
+
+        boolean dirty;
+
+        boolean evicted;
+
+        long lastAccessNanos = System.nanoTime();
+
+        Entry(long userId) {
+            this.userId = userId;
+        }
+
+        Contents contents() {
+            List<CartItem> items = new ArrayList<>(quantities.size());
+            quantities.forEach((productId, quantityKG) -> items.add(new CartItem(productId, quantityKG)));
+            return new Contents(version, items);
+        }
+    }
+
+    private final WebClient dataAccessClient;
+
+    private final Duration idleTimeout;
+
+    private final Duration flushInterval;
+
+    private final ConcurrentMap<Long, Entry> carts = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public CartStore(@Qualifier("dataAccessWebClient") WebClient dataAccessWebClient,
+                     @Value("${cart.store.idle-timeout:30m}") Duration idleTimeout,
+                     @Value("${cart.store.flush-interval:5s}") Duration flushInterval) {
+        this.dataAccessClient = dataAccessWebClient;
+        this.idleTimeout = idleTimeout;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Starts the write-behind and eviction thread.
+     */
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cart-store-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushAndEvict, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the thread and writes every dirty cart.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        flushDirty();
+    }
+
+    /**
+     * @param userId The cart's owner
+     * @return The cart's current items and version
+     */
+    public Contents get(long userId) {
+        return update(userId, quantities -> { }, false);
+    }
+
+    /**
+     * Adds a quantity of a product to the cart (on top of what is already there).
+     *
+     * @param userId     The cart's owner
+     * @param productId  The product
+     * @param quantityKG The kg to add (positive)
+     * @return The cart after the change
+     */
+    public Contents add(long userId, long productId, double quantityKG) {
+        if (!(quantityKG > 0)) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        // Two decimals, like the stock column
+        return update(userId, quantities -> quantities.merge(productId, quantityKG,
+                (current, added) -> Math.round((current + added) * 100) / 100.0), true);
+    }
+
+    /**
+     * Removes a product from the cart.
+     *
+     * @param userId    The cart's owner
+     * @param productId The product
+     * @return The cart after the change
+     */
+    public Contents remove(long userId, long productId) {
+        return update(userId, quantities -> quantities.remove(productId), true);
+    }
+
+    /**
+     * Empties the cart after it was ordered, unless it changed since, and has it written right away.
+     *
+     * @param userId         The cart's owner
+     * @param orderedVersion The version that was ordered
+     */
+    public void clearOrdered(long userId, long orderedVersion) {
+        Entry entry = carts.get(userId);
+        if (entry == null) {
+            return;
+        }
+        entry.lock.lock();
+        try {
+            if (entry.evicted || entry.version != orderedVersion) {
+                return;
+            }
+            entry.quantities.clear();
+            entry.version++;
+            entry.dirty = true;
+        } finally {
+            entry.lock.unlock();
+        }
+        // Written by the flush thread, like every other cart write
+        try {
+            scheduler.execute(this::flushAndEvict);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: stop() writes the dirty cart
+        }
+    }
+
+    private Contents update(long userId, Consumer<Map<Long, Double>> change, boolean modifies) {
+        while (true) {
+            Entry entry = carts.get(userId);
+            if (entry == null) {
+                // Loaded outside the map's locks, so a slow load never blocks other users
+                Entry loaded = load(userId);
+                entry = carts.putIfAbsent(userId, loaded);
+                if (entry == null) {
+                    entry = loaded;
+                }
+            }
+            entry.lock.lock();
+            try {
+                if (entry.evicted) {
+                    continue;
+                }
+                entry.lastAccessNanos = System.nanoTime();
+                if (modifies) {
+                    change.accept(entry.quantities);
+                    entry.version++;
+                    entry.dirty = true;
+                }
+                return entry.contents();
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    private Entry load(long userId) {
+        Cart stored = dataAccessClient.get()
+                .uri("/api/data/carts/{userId}", userId)
+                .retrieve()
+                .bodyToMono(Cart.class)
+                .block();
+        Entry entry = new Entry(userId);
+        if (stored != null) {
+            stored.items().forEach(item -> entry.quantities.put(item.productId(), item.quantityKG()));
+        }
+        return entry;
+    }
+
+    private void flushAndEvict() {
+        try {
+            flushDirty();
+            evictIdle();
+        } catch (Exception e) {
+            // Dirty carts stay dirty and are retried on the next run
+            System.err.println("CartStore: Write-behind failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every dirty cart in one batch. Runs on the flush thread only.
+     */
+    private void flushDirty() {
+        Map<Entry, Long> flushedVersions = new LinkedHashMap<>();
+        List<Cart> batch = new ArrayList<>();
+        for (Entry entry : carts.values()) {
+            entry.lock.lock();
+            try {
+                if (entry.dirty) {
+                    flushedVersions.put(entry, entry.version);
+                    batch.add(new Cart(entry.userId, entry.contents().items()));
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        save(batch);
+
+        // Carts changed while the batch was in flight stay dirty and are written again
+        flushedVersions.forEach((entry, version) -> markClean(entry, version));
+    }
+
+    /**
+     * Drops carts that have not been used for the idle timeout (dirty ones are written first).
+     * Runs on the flush thread only.
+     */
+    private void evictIdle() {
+        for (Entry entry : carts.values()) {
+            Cart unsaved = null;
+            long version;
+            entry.lock.lock();
+            try {
+                if (System.nanoTime() - entry.lastAccessNanos < idleTimeout.toNanos()) {
+                    continue;
+                }
+                version = entry.version;
+                if (entry.dirty) {
+                    unsaved = new Cart(entry.userId, entry.contents().items());
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+
+            if (unsaved != null) {
+                save(List.of(unsaved));
+            }
+
+            entry.lock.lock();
+            try {
+                // Used again while it was being written: keep it
+                if (entry.version != version || System.nanoTime() - entry.lastAccessNanos < idleTimeout.toNanos()) {
+                    continue;
+                }
+                entry.dirty = false;
+                entry.evicted = true;
+                carts.remove(entry.userId, entry);
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    private void markClean(Entry entry, long writtenVersion) {
+        entry.lock.lock();
+        try {
+            if (entry.version == writtenVersion) {
+                entry.dirty = false;
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    private void save(List<Cart> batch) {
+        dataAccessClient.put()
+                .uri("/api/data/carts")
+                .bodyValue(batch)
+                .retrieve()
+                .toBodilessEntity()
+                .block();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.productcatalogservice.service;
+
+/**
+ * Checkout Deduplicator
+ *
+ * A double click on "Place order", or a client retrying after a timeout, used to run the
+ * checkout again and take the stock twice. The checkout page now sends an Idempotency-Key
+ * header (one key per checkout attempt), and this class makes sure each key is checked out
+ * only once.
+ *
+ * How it works:
+ * - The first request with a key runs the checkout; its result is kept in a bounded,
+ *   time-limited Caffeine cache keyed by user ID and key
+ * - A retry finds the result in the cache and gets the same order confirmation without any
+ *   call to the Data Access Service
+ * - A retry that arrives while the first request is still running waits for it and shares
+ *   its result, so concurrent duplicates never reach the database
+ * - Failed checkouts are not cached, so the client can retry them with the same key
+ *
+ * The cache is per instance and forgets keys after the TTL; the Data Access Service backs it
+ * with a unique ORDERS.idempotencykey column, so a retry that misses the cache still returns
+ * the original order instead of creating a second one.
+ *
+ * Metrics:
+ * - Hit/miss counters are published as cache.gets with the tag cache=checkoutIdempotency
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+@Service
+public class CheckoutDeduplicator {
+
+    /**
+     * Length of the ORDERS.idempotencykey column in the Data Access Service
+     */
+    private static final int MAX_KEY_LENGTH = 100;
+
+    /**
+     * User ID and key to the checkout's result (still running while incomplete)
+     */
+    private final Cache<String, CompletableFuture<Map<String, Object>>> results;
+
+    public CheckoutDeduplicator(MeterRegistry meterRegistry,
+                                @Value("${checkout.idempotency.max-size:10000}") long maxSize,
+                                @Value("${checkout.idempotency.ttl:1h}") Duration ttl) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "checkoutIdempotency");
+    }
+
+    /**
+     * Runs a checkout at most once per user and idempotency key.
+     *
+     * @param userId         The user placing the order (keys are scoped per user)
+     * @param idempotencyKey The client's key for this checkout, or null to always run it
+     * @param checkout       Places the order and returns its confirmation
+     * @return The confirmation of this checkout, or of the earlier one with the same key
+     * @throws IllegalArgumentException if the key is empty or too long
+     * @throws Exception whatever the checkout (or the concurrent one with the same key) threw
+     */
+    public Map<String, Object> execute(long userId, String idempotencyKey,
+                                       Callable<Map<String, Object>> checkout) throws Exception {
+        if (idempotencyKey == null) {
+            return checkout.call();
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = userId + ":" + idempotencyKey;
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> earlier = results.get(cacheKey, key -> result);
+        if (earlier != result) {
+            try {
+                return earlier.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        try {
+            Map<String, Object> confirmation = checkout.call();
+            result.complete(confirmation);
+            return confirmation;
+        } catch (Throwable t) {
+            // Not cached: a later retry with this key runs the checkout again. Errors are caught
+            // too, or the waiting duplicates would block on the future forever.
+            results.asMap().remove(cacheKey, result);
+            result.completeExceptionally(t);
+            throw t;
+        }
+    }
+}
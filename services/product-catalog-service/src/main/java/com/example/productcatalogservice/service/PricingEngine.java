@@ -0,0 +1,180 @@
+package com.example.productcatalogservice.service;
+
+/**
+ * Pricing Engine
+ *
+ * The checkout page used to compute the order total in the browser from prices it had kept in
+ * localStorage, and the checkout trusted that total and those prices. This engine prices a
+ * basket on the server from the current inventory prices instead, and checks it on the way.
+ *
+ * How it stays cheap:
+ * - Prices are read from a price table built from the local inventory cache: parallel
+ *   primitive arrays (product IDs, prices, descriptions) sorted by product ID, searched with
+ *   a binary search, so pricing a line allocates nothing but the line itself
+ * - The table is rebuilt only when the cache hands out a different item list, i.e. when the
+ *   inventory changed; the cache keeps returning the same instance while it is unchanged
+ * - A basket is validated and priced in a single pass
+ *
+ * Money:
+ * - Quantities are rounded to hundredths of a kg (the precision of the stockkg column) and
+ *   prices per kg are whole units, so every line is an exact number of cents
+ */
+
+import com.example.common.inventory.InventoryCache;
+import com.example.contracts.CartItem;
+import com.example.contracts.InventoryItem;
+import com.example.productcatalogservice.model.PricedCart;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class PricingEngine {
+
+    /**
+     * Inventory prices in lookup form, built from one version of the inventory.
+     */
+    private static final class PriceTable {
+
+        /**
+         * The cache's item list this table was built from (compared by identity)
+         */
+        final List<InventoryItem> source;
+
+        final long[] productIds;
+
+        final int[] pricesPerKG;
+
+        final String[] descriptions;
+
+        PriceTable(List<InventoryItem> source) {
+            this.source = source;
+            InventoryItem[] sorted = source.toArray(InventoryItem[]::new);
+            Arrays.sort(sorted, Comparator.comparingLong(InventoryItem::productId));
+
+            productIds = new long[sorted.length];
+            pricesPerKG = new int[sorted.length];
+            descriptions = new String[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                productIds[i] = sorted[i].productId();
+                pricesPerKG[i] = sorted[i].pricePerKG();
+                descriptions[i] = sorted[i].description();
+            }
+        }
+
+        /**
+         * @return The index of the product, or a negative number if it is unknown
+         */
+        int indexOf(long productId) {
+            return Arrays.binarySearch(productIds, productId);
+        }
+    }
+
+    private final InventoryCache inventoryCache;
+
+    private volatile PriceTable table;
+
+    public PricingEngine(InventoryCache inventoryCache) {
+        this.inventoryCache = inventoryCache;
+    }
+
+    /**
+     * Prices a basket at the current inventory prices.
+     *
+     * Prices sent by the client are ignored. Stock is not checked here; the Data Access
+     * Service does that authoritatively when the order is placed.
+     *
+     * @param items Basket items with productId and quantity (kg)
+     * @return The priced basket; check isValid() before placing an order with it
+     */
+    public PricedCart price(List<Map<String, Object>> items) {
+        List<CartItem> cartItems = new ArrayList<>(items.size());
+        List<String> errors = new ArrayList<>();
+
+        for (Map<String, Object> item : items) {
+            Object productIdValue = item.get("productId");
+            Object quantityValue = item.get("quantity");
+            // Browsers send the ID as a string (localStorage map keys) or a number
+            long productId;
+            try {
+                productId = productIdValue instanceof Number number ? number.longValue()
+                        : Long.parseLong(String.valueOf(productIdValue));
+            } catch (NumberFormatException e) {
+                errors.add("Invalid product ID: " + productIdValue);
+                continue;
+            }
+            if (!(quantityValue instanceof Number quantity)) {
+                errors.add("Invalid quantity for product ID " + productId + ": " + quantityValue);
+                continue;
+            }
+            cartItems.add(new CartItem(productId, quantity.doubleValue()));
+        }
+
+        return price(cartItems, errors);
+    }
+
+    /**
+     * Prices the items of a server-side cart at the current inventory prices.
+     *
+     * @param items The cart items
+     * @return The priced cart; check isValid() before placing an order with it
+     */
+    public PricedCart priceItems(List<CartItem> items) {
+        return price(items, new ArrayList<>());
+    }
+
+    /**
+     * @param productId A product ID
+     * @return Whether the product is in the inventory
+     */
+    public boolean isKnownProduct(long productId) {
+        return currentTable().indexOf(productId) >= 0;
+    }
+
+    private PricedCart price(List<CartItem> items, List<String> errors) {
+        PriceTable prices = currentTable();
+        List<PricedCart.Line> lines = new ArrayList<>(items.size());
+        long totalCents = 0;
+
+        for (CartItem item : items) {
+            long productId = item.productId();
+            int index = prices.indexOf(productId);
+            if (index < 0) {
+                errors.add("Unknown product ID: " + productId);
+                continue;
+            }
+
+            long quantityUnits = Math.round(item.quantityKG() * 100);
+            if (quantityUnits <= 0) {
+                errors.add("Invalid quantity for " + prices.descriptions[index] + ": " + item.quantityKG());
+                continue;
+            }
+
+            int pricePerKG = prices.pricesPerKG[index];
+            long lineCents = quantityUnits * pricePerKG;
+            totalCents += lineCents;
+            lines.add(new PricedCart.Line(productId, prices.descriptions[index],
+                    quantityUnits / 100.0, pricePerKG, lineCents / 100.0));
+        }
+
+        if (lines.isEmpty() && errors.isEmpty()) {
+            errors.add("The basket is empty");
+        }
+        return new PricedCart(lines, totalCents / 100.0, errors);
+    }
+
+    private PriceTable currentTable() {
+        List<InventoryItem> items = inventoryCache.getItems();
+        PriceTable current = table;
+        if (current == null || current.source != items) {
+            // Racing rebuilds produce equal tables, so whichever write wins is fine
+            current = new PriceTable(items);
+            table = current;
+        }
+        return current;
+    }
+}
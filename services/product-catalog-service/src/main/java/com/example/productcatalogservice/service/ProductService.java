@@ -15,8 +15,11 @@ package com.example.productcatalogservice.service;
  * 
  * Key Responsibilities:
  * - Retrieving product catalog data
- * - Processing checkout and order creation
- * - Updating inventory during checkout
+ * - Pricing baskets on the server (see PricingEngine)
+ * - Keeping each user's shopping cart on the server (see CartStore)
+ * - Placing each checkout only once per Idempotency-Key (see CheckoutDeduplicator)
+ * - Processing checkout and order creation (a single Data Access call and transaction)
+ * - Recording checkout latency metrics
  * 
  * In our microservices architecture:
  * - This service focuses on product and order business logic
@@ -24,13 +27,23 @@ package com.example.productcatalogservice.service;
  * - The controller handles HTTP concerns and view rendering
  */
 
+import com.example.common.inventory.InventoryCache;
+import com.example.contracts.InventoryItem;
+import com.example.productcatalogservice.model.PricedCart;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Service for product catalog and checkout functionality.
@@ -50,85 +63,254 @@ public class ProductService {
      * - Update inventory quantities
      */
     private final WebClient dataAccessClient;
+
+    /**
+     * Local copy of the inventory, kept fresh by the Data Access change feed.
+     *
+     * Page renders read from it instead of fetching the inventory on every request.
+     */
+    private final InventoryCache inventoryCache;
+
+    /**
+     * Registry for the checkout latency timer.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Prices baskets from the current inventory prices.
+     */
+    private final PricingEngine pricingEngine;
+
+    /**
+     * Server-side shopping carts.
+     */
+    private final CartStore cartStore;
+
+    /**
+     * Runs each checkout at most once per Idempotency-Key.
+     */
+    private final CheckoutDeduplicator checkoutDeduplicator;
     
     /**
      * Constructor that initializes the WebClient instance.
      * 
      * The WebClient is configured to communicate with:
      * - Data Access Service: For database operations
+     *
+     * @param dataAccessWebClient Shared client for the Data Access Service
+     * @param inventoryCache Shared local inventory cache
+     * @param meterRegistry Registry for checkout metrics
+     * @param pricingEngine Server-side basket pricing
+     * @param cartStore Server-side shopping carts
+     * @param checkoutDeduplicator Dedupes retried checkouts
      */
-    public ProductService() {
-        // Create WebClient for Data Access Service
-        this.dataAccessClient = WebClient.create("http://data-access-service:8085");
+    public ProductService(@Qualifier("dataAccessWebClient") WebClient dataAccessWebClient,
+                          InventoryCache inventoryCache, MeterRegistry meterRegistry,
+                          PricingEngine pricingEngine, CartStore cartStore,
+                          CheckoutDeduplicator checkoutDeduplicator) {
+        // Shared, pooled client for the Data Access Service (see common HttpClientAutoConfiguration)
+        this.dataAccessClient = dataAccessWebClient;
+        this.inventoryCache = inventoryCache;
+        this.meterRegistry = meterRegistry;
+        this.pricingEngine = pricingEngine;
+        this.cartStore = cartStore;
+        this.checkoutDeduplicator = checkoutDeduplicator;
     }
     
     /**
      * Retrieves all products from the inventory.
      * 
      * This method:
-     * - Fetches product data from the Data Access Service
+     * - Reads product data from the local inventory cache
      * - Returns a list of products for display in the catalog
      * 
-     * @return List of product records as maps
+     * @return List of inventory items
      */
-    public List<Map<String, Object>> getProducts() {
-        return dataAccessClient.get()
-                .uri("/api/data/tables/inventory")
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-                .block();
+    public List<InventoryItem> getProducts() {
+        return inventoryCache.getItems();
+    }
+
+    /**
+     * Non-blocking variant of getProducts(), so a page can load products and user info concurrently.
+     *
+     * @return A Mono emitting the inventory items
+     */
+    public Mono<List<InventoryItem>> getProductsAsync() {
+        return inventoryCache.getItemsAsync();
     }
     
+    /**
+     * Prices a basket at the current inventory prices, for the checkout page's order summary.
+     *
+     * @param items Basket items with productId and quantity (kg)
+     * @return The priced basket, with errors for items that could not be priced
+     */
+    public PricedCart priceBasket(List<Map<String, Object>> items) {
+        return pricingEngine.price(items);
+    }
+
     /**
      * Processes a checkout operation.
      * 
      * This method:
-     * 1. Updates inventory quantities (reduces stock)
-     * 2. Creates a new order record
+     * 1. Prices the basket on the server (client prices and totals are ignored)
+     * 2. Sends the whole checkout to the Data Access Service in one request
      * 3. Returns the order confirmation
      * 
      * Transaction Flow:
-     * 1. Extract items from checkout data
-     * 2. Update inventory quantities
-     * 3. Create order record with items
-     * 4. Return order confirmation
+     * - The Data Access Service reduces stock, creates the order and its items in a single
+     *   database transaction, so a failure at any step leaves stock untouched
      * 
-     * @param checkoutData Map containing order details (items, user, address, etc.)
+     * Idempotency:
+     * - A retry with the same idempotency key returns the first checkout's confirmation
+     *   and takes no stock (see CheckoutDeduplicator)
+     * 
+     * Metrics:
+     * - Each checkout is timed as "catalog.checkout" with an outcome tag
+     *   (success/insufficient_stock/failure)
+     * 
+     * @param userId The user placing the order (from the session, never from the request body)
+     * @param checkoutData Map containing order details (items, address, etc.)
+     * @param idempotencyKey The client's key for this checkout, or null
+     * @return Map containing the order confirmation (order ID, etc.)
+     * @throws WebClientResponseException.Conflict if stock is insufficient (the response body
+     *         lists the shortfalls)
+     * @throws WebClientResponseException with the Data Access Service's status for any other
+     *         error it answers (e.g. 422 when the idempotency key belongs to another order)
+     * @throws Exception if any other step in the checkout process fails
+     */
+    public Map<String, Object> processCheckout(long userId, Map<String, Object> checkoutData, String idempotencyKey) throws Exception {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> basket = (List<Map<String, Object>>) checkoutData.get("items");
+        return checkoutDeduplicator.execute(userId, idempotencyKey,
+                () -> submitOrder(userId, checkoutData.get("deliveryAddress"), idempotencyKey,
+                        () -> pricingEngine.price(basket == null ? List.of() : basket)));
+    }
+
+    /**
+     * Returns the user's server-side cart, priced at the current inventory prices.
+     *
+     * @param userId The cart's owner
+     * @return The priced cart (an empty cart has the error "The basket is empty")
+     */
+    public PricedCart getCart(long userId) {
+        return pricingEngine.priceItems(cartStore.get(userId).items());
+    }
+
+    /**
+     * Adds a product to the user's cart.
+     *
+     * @param userId     The cart's owner
+     * @param productId  The product
+     * @param quantityKG The kg to add
+     * @return The priced cart after the change
+     * @throws IllegalArgumentException if the product is unknown or the quantity is not positive
+     */
+    public PricedCart addToCart(long userId, long productId, double quantityKG) {
+        if (!pricingEngine.isKnownProduct(productId)) {
+            throw new IllegalArgumentException("Unknown product ID: " + productId);
+        }
+        return pricingEngine.priceItems(cartStore.add(userId, productId, quantityKG).items());
+    }
+
+    /**
+     * Removes a product from the user's cart.
+     *
+     * @param userId    The cart's owner
+     * @param productId The product
+     * @return The priced cart after the change
+     */
+    public PricedCart removeFromCart(long userId, long productId) {
+        return pricingEngine.priceItems(cartStore.remove(userId, productId).items());
+    }
+
+    /**
+     * Places an order for the contents of the user's server-side cart.
+     *
+     * Works like processCheckout, but the items come from the CartStore instead of the request.
+     * On success the cart is emptied, unless it was changed while the order was being placed.
+     * A retry with the same idempotency key returns the first confirmation and changes nothing.
+     *
+     * @param userId          The cart's owner
+     * @param deliveryAddress Where to deliver the order
+     * @param idempotencyKey  The client's key for this checkout, or null
      * @return Map containing the order confirmation (order ID, etc.)
-     * @throws Exception if any step in the checkout process fails
+     * @throws WebClientResponseException.Conflict if stock is insufficient
+     * @throws WebClientResponseException with the Data Access Service's status for any other error
+     * @throws Exception if any other step in the checkout process fails
+     */
+    public Map<String, Object> checkoutCart(long userId, String deliveryAddress, String idempotencyKey) throws Exception {
+        return checkoutDeduplicator.execute(userId, idempotencyKey, () -> {
+            CartStore.Contents contents = cartStore.get(userId);
+            Map<String, Object> result = submitOrder(userId, deliveryAddress, idempotencyKey,
+                    () -> pricingEngine.priceItems(contents.items()));
+            cartStore.clearOrdered(userId, contents.version());
+            return result;
+        });
+    }
+
+    /**
+     * Prices a basket and sends it to the Data Access Service as one order, timing the checkout.
      */
-    public Map<String, Object> processCheckout(Map<String, Object> checkoutData) throws Exception {
+    private Map<String, Object> submitOrder(Object userId, Object deliveryAddress, String idempotencyKey,
+                                            Supplier<PricedCart> basket) throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
         try {
-            // Extract items from checkout data
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> items = (List<Map<String, Object>>) checkoutData.get("items");
-            
-            // Step 1: Update inventory quantities
-            // This reduces stock levels for purchased items
-            dataAccessClient.post()
-                .uri("/api/data/inventory/update-batch")
-                .bodyValue(items)
-                .retrieve()
-                .bodyToMono(Void.class)
-                .block();
-            
-            // Step 2: Create the order record
+            PricedCart cart = basket.get();
+            if (!cart.isValid()) {
+                throw new IllegalArgumentException(String.join("; ", cart.errors()));
+            }
+
+            List<Map<String, Object>> items = new ArrayList<>(cart.lines().size());
+            for (PricedCart.Line line : cart.lines()) {
+                items.add(Map.of(
+                        "productId", line.productId(),
+                        "quantity", line.quantityKG(),
+                        "pricePerKG", line.pricePerKG()));
+            }
+
             Map<String, Object> orderData = new HashMap<>();
-            orderData.put("userId", checkoutData.get("userId"));
-            orderData.put("deliveryAddress", checkoutData.get("deliveryAddress"));
-            orderData.put("totalPrice", checkoutData.get("totalPrice"));
+            orderData.put("userId", userId);
+            orderData.put("deliveryAddress", deliveryAddress);
+            orderData.put("totalPrice", cart.totalPrice());
             orderData.put("items", items);
-            
-            // Send order creation request to Data Access Service
-            return dataAccessClient.post()
-                .uri("/api/data/orders/create")
+
+            // Send the checkout to the Data Access Service (one request, one transaction).
+            // The key goes along, so a retry that missed the dedupe cache still gets the first order.
+            Map<String, Object> result = dataAccessClient.post()
+                .uri("/api/data/checkout")
+                .headers(headers -> {
+                    if (idempotencyKey != null) {
+                        headers.set("Idempotency-Key", idempotencyKey);
+                    }
+                })
                 .bodyValue(orderData)
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
                 .block();
+
+            // Stock levels changed, so the next catalog render must not use the old copy
+            inventoryCache.invalidate();
+
+            outcome = "success";
+            return result;
+        } catch (WebClientResponseException e) {
+            // Passed on unchanged, so the controller can answer with the Data Access Service's
+            // status: 409 lists every short product, 422 means the key belongs to another order
+            if (e instanceof WebClientResponseException.Conflict) {
+                outcome = "insufficient_stock";
+            }
+            throw e;
         } catch (Exception e) {
             // Rethrow the exception to be handled by the controller
             throw new Exception("Checkout process failed: " + e.getMessage(), e);
+        } finally {
+            sample.stop(Timer.builder("catalog.checkout")
+                    .description("Latency of checkout requests to the Data Access Service")
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
         }
     }
 }
@@ -0,0 +1,126 @@
+package com.example.productcatalogservice.controller;
+
+import com.example.common.auth.UserInfoClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.productcatalogservice.service.ProductService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that the checkout endpoints keep the Data Access Service's error status instead of
+ * turning every refusal into 400.
+ */
+class CheckoutErrorStatusTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ProductService productService = mock(ProductService.class);
+
+    private final UserInfoClient userInfoClient = mock(UserInfoClient.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ProductCatalogController controller = new ProductCatalogController();
+        ReflectionTestUtils.setField(controller, "productService", productService);
+        ReflectionTestUtils.setField(controller, "userInfoClient", userInfoClient);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        when(userInfoClient.getUserInfo("session-1")).thenReturn(Map.of("id", 7));
+    }
+
+    @Test
+    void reusedIdempotencyKeyIsAnswered422() throws Exception {
+        when(productService.processCheckout(anyLong(), any(), anyString()))
+                .thenThrow(dataAccessError(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "{\"error\":\"Idempotency key was already used by another user\"}"));
+
+        mockMvc.perform(post("/checkout")
+                        .cookie(new Cookie("JSESSIONID", "session-1"))
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"productId\":1,\"quantity\":1}],\"deliveryAddress\":\"Main St\"}"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value("Idempotency key was already used by another user"));
+    }
+
+    @Test
+    void stockShortfallIsAnswered409WithTheShortfalls() throws Exception {
+        when(productService.checkoutCart(anyLong(), any(), anyString()))
+                .thenThrow(dataAccessError(HttpStatus.CONFLICT,
+                        "{\"error\":\"Insufficient stock for product ID: 1\",\"shortfalls\":[{\"productId\":1}]}"));
+
+        mockMvc.perform(post("/cart/checkout")
+                        .cookie(new Cookie("JSESSIONID", "session-1"))
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"deliveryAddress\":\"Main St\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.shortfalls[0].productId").value(1));
+    }
+
+    @Test
+    void dataAccessServerErrorIsAnswered502() throws Exception {
+        when(productService.processCheckout(anyLong(), any(), anyString()))
+                .thenThrow(dataAccessError(HttpStatus.INTERNAL_SERVER_ERROR, ""));
+
+        mockMvc.perform(post("/checkout")
+                        .cookie(new Cookie("JSESSIONID", "session-1"))
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[],\"deliveryAddress\":\"Main St\"}"))
+                .andExpect(status().isBadGateway());
+    }
+
+    @Test
+    void otherFailuresStay400() throws Exception {
+        when(productService.processCheckout(anyLong(), any(), anyString()))
+                .thenThrow(new IllegalArgumentException("The basket is empty"));
+
+        mockMvc.perform(post("/checkout")
+                        .cookie(new Cookie("JSESSIONID", "session-1"))
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[],\"deliveryAddress\":\"Main St\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("The basket is empty"));
+    }
+
+    private static WebClientResponseException dataAccessError(HttpStatus status, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        WebClientResponseException e = WebClientResponseException.create(status.value(), status.getReasonPhrase(),
+                headers, body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        // What WebClient's retrieve() sets up, so getResponseBodyAs can decode the JSON body
+        e.setBodyDecodeFunction(type -> {
+            try {
+                return body.isEmpty() ? null : OBJECT_MAPPER.readValue(body, OBJECT_MAPPER.constructType(type.getType()));
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        });
+        return e;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.productcatalogservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CheckoutDeduplicatorTest {
+
+    private final CheckoutDeduplicator deduplicator =
+            new CheckoutDeduplicator(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
+    @Test
+    void concurrentDuplicatesRunTheCheckoutOnceAndShareItsResult() throws Exception {
+        int callers = 32;
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch allStarted = new CountDownLatch(callers);
+        Map<String, Object> confirmation = Map.of("orderId", 42L);
+
+        List<Future<Map<String, Object>>> results = runConcurrently(callers, () -> {
+            allStarted.countDown();
+            return deduplicator.execute(7L, "key-1", () -> {
+                invocations.incrementAndGet();
+                // Keep the first checkout running until every duplicate has arrived
+                allStarted.await(5, TimeUnit.SECONDS);
+                return confirmation;
+            });
+        });
+
+        for (Future<Map<String, Object>> result : results) {
+            assertSame(confirmation, result.get());
+        }
+        assertEquals(1, invocations.get());
+
+        // A later retry is answered from the cache
+        assertSame(confirmation, deduplicator.execute(7L, "key-1", () -> {
+            throw new AssertionError("Checkout ran again");
+        }));
+    }
+
+    @Test
+    void keysAreScopedPerUser() throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+
+        deduplicator.execute(1L, "shared", () -> Map.of("orderId", (long) invocations.incrementAndGet()));
+        Map<String, Object> other = deduplicator.execute(2L, "shared",
+                () -> Map.of("orderId", (long) invocations.incrementAndGet()));
+
+        assertEquals(2, invocations.get());
+        assertEquals(2L, other.get("orderId"));
+    }
+
+    @Test
+    void failedCheckoutIsNotCached() throws Exception {
+        assertThrows(IllegalStateException.class, () -> deduplicator.execute(1L, "key", () -> {
+            throw new IllegalStateException("Data Access Service unavailable");
+        }));
+
+        assertEquals(Map.of("orderId", 5L), deduplicator.execute(1L, "key", () -> Map.of("orderId", 5L)));
+    }
+
+    @Test
+    void errorInTheCheckoutReleasesWaitingDuplicates() throws Exception {
+        CountDownLatch firstRunning = new CountDownLatch(1);
+        CountDownLatch duplicateWaiting = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Map<String, Object>> first = executor.submit(() -> deduplicator.execute(1L, "key", () -> {
+                firstRunning.countDown();
+                duplicateWaiting.await(5, TimeUnit.SECONDS);
+                throw new OutOfMemoryError("simulated");
+            }));
+            firstRunning.await();
+            Future<Map<String, Object>> duplicate = executor.submit(() -> {
+                duplicateWaiting.countDown();
+                return deduplicator.execute(1L, "key", () -> Map.of("orderId", 1L));
+            });
+
+            ExecutionException firstFailure = assertThrows(ExecutionException.class, first::get);
+            assertInstanceOf(OutOfMemoryError.class, firstFailure.getCause());
+            // The duplicate either shared the failure or, if it arrived after it, ran on its own;
+            // either way it must not hang
+            try {
+                duplicate.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertInstanceOf(OutOfMemoryError.class, e.getCause().getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsKeysLongerThanTheColumn() {
+        assertThrows(IllegalArgumentException.class,
+                () -> deduplicator.execute(1L, "k".repeat(101), () -> Map.of()));
+    }
+
+    private static <T> List<Future<T>> runConcurrently(int threads, Callable<T> task) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(task));
+        }
+        executor.shutdown();
+        return futures;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.productcatalogservice.service;
+
+import com.example.common.inventory.InventoryCache;
+import com.example.contracts.CartItem;
+import com.example.contracts.InventoryItem;
+import com.example.productcatalogservice.model.PricedCart;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PricingEngineTest {
+
+    private final InventoryCache inventoryCache = mock(InventoryCache.class);
+
+    private final PricingEngine pricingEngine = new PricingEngine(inventoryCache);
+
+    @Test
+    void randomBasketsMatchThePreviousPricing() {
+        Random random = new Random(42);
+        List<InventoryItem> inventory = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Unsorted IDs with gaps, like a table after deletes
+            long productId = 1 + random.nextInt(10_000);
+            if (inventory.stream().noneMatch(item -> item.productId() == productId)) {
+                inventory.add(new InventoryItem(productId, "Product " + productId, 100.0, 1 + random.nextInt(500)));
+            }
+        }
+        when(inventoryCache.getItems()).thenReturn(List.copyOf(inventory));
+
+        for (int basket = 0; basket < 500; basket++) {
+            List<CartItem> items = new ArrayList<>();
+            int lines = 1 + random.nextInt(8);
+            for (int i = 0; i < lines; i++) {
+                InventoryItem product = inventory.get(random.nextInt(inventory.size()));
+                // Quantities with two decimals, as the catalog page sends them
+                items.add(new CartItem(product.productId(), (1 + random.nextInt(2_000)) / 100.0));
+            }
+
+            PricedCart priced = pricingEngine.priceItems(items);
+
+            assertTrue(priced.isValid(), () -> String.join("; ", priced.errors()));
+            assertEquals(items.size(), priced.lines().size());
+            double expectedTotal = 0;
+            for (int i = 0; i < items.size(); i++) {
+                CartItem item = items.get(i);
+                PricedCart.Line line = priced.lines().get(i);
+                // What the checkout page computed: quantity * price per kg, shown to the cent
+                int pricePerKG = linearPriceLookup(inventory, item.productId());
+                double expectedLine = item.quantityKG() * pricePerKG;
+                expectedTotal += expectedLine;
+
+                assertEquals(item.productId(), line.productId());
+                assertEquals(pricePerKG, line.pricePerKG());
+                assertEquals(item.quantityKG(), line.quantityKG());
+                assertEquals(cents(expectedLine), cents(line.lineTotal()));
+            }
+            assertEquals(cents(expectedTotal), cents(priced.totalPrice()));
+        }
+    }
+
+    @Test
+    void rebuildsTheTableWhenTheInventoryChanges() {
+        when(inventoryCache.getItems()).thenReturn(List.of(new InventoryItem(1L, "Apples", 10.0, 5)));
+        assertEquals(10.0, pricingEngine.priceItems(List.of(new CartItem(1L, 2.0))).totalPrice());
+
+        // A new list from the cache means new prices and products
+        when(inventoryCache.getItems()).thenReturn(List.of(
+                new InventoryItem(1L, "Apples", 10.0, 7),
+                new InventoryItem(2L, "Pears", 10.0, 3)));
+        PricedCart priced = pricingEngine.priceItems(List.of(new CartItem(1L, 2.0), new CartItem(2L, 1.5)));
+
+        assertEquals(14.0, priced.lines().get(0).lineTotal());
+        assertEquals(4.5, priced.lines().get(1).lineTotal());
+        assertEquals(18.5, priced.totalPrice());
+        assertTrue(pricingEngine.isKnownProduct(2L));
+    }
+
+    @Test
+    void reportsEveryInvalidLine() {
+        when(inventoryCache.getItems()).thenReturn(List.of(new InventoryItem(1L, "Apples", 10.0, 5)));
+
+        PricedCart priced = pricingEngine.price(List.of(
+                Map.of("productId", "1", "quantity", 1.25),
+                Map.of("productId", 99, "quantity", 1),
+                Map.of("productId", "x", "quantity", 1),
+                Map.of("productId", 1, "quantity", 0)));
+
+        assertFalse(priced.isValid());
+        assertEquals(3, priced.errors().size());
+        assertEquals(1, priced.lines().size());
+        assertEquals(6.25, priced.totalPrice());
+    }
+
+    @Test
+    void emptyBasketIsInvalid() {
+        when(inventoryCache.getItems()).thenReturn(List.of(new InventoryItem(1L, "Apples", 10.0, 5)));
+
+        assertEquals(List.of("The basket is empty"), pricingEngine.priceItems(List.of()).errors());
+    }
+
+    private static int linearPriceLookup(List<InventoryItem> inventory, long productId) {
+        for (InventoryItem item : inventory) {
+            if (item.productId() == productId) {
+                return item.pricePerKG();
+            }
+        }
+        throw new IllegalArgumentException("Unknown product ID: " + productId);
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+}